@@ -0,0 +1,35 @@
+package com.finprodb.backendjava.admin;
+
+import com.finprodb.backendjava.cart.GuestCartStore;
+import com.finprodb.backendjava.common.BoundedCache;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCacheController {
+  private final List<BoundedCache<?, ?>> caches;
+  private final GuestCartStore guestCarts;
+
+  public AdminCacheController(List<BoundedCache<?, ?>> caches, GuestCartStore guestCarts) {
+    this.caches = caches;
+    this.guestCarts = guestCarts;
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Object>> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    for (BoundedCache<?, ?> cache : caches) {
+      stats.put(cache.getName(), cache.stats());
+    }
+    stats.put("guestCarts", guestCarts.stats());
+    return ResponseEntity.ok(stats);
+  }
+}
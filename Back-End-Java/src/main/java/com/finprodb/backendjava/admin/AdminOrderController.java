@@ -2,9 +2,13 @@ package com.finprodb.backendjava.admin;
 
 import com.finprodb.backendjava.admin.dto.AdminOrderResponse;
 import com.finprodb.backendjava.admin.dto.AdminSummaryResponse;
+import com.finprodb.backendjava.common.ExportFormat;
 import com.finprodb.backendjava.order.OrderStatus;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,15 +17,19 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/admin")
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminOrderController {
   private final AdminOrderService adminOrderService;
+  private final AdminOrderExportService adminOrderExportService;
 
-  public AdminOrderController(AdminOrderService adminOrderService) {
+  public AdminOrderController(
+      AdminOrderService adminOrderService, AdminOrderExportService adminOrderExportService) {
     this.adminOrderService = adminOrderService;
+    this.adminOrderExportService = adminOrderExportService;
   }
 
   @GetMapping("/orders")
@@ -32,6 +40,21 @@ public class AdminOrderController {
     return ResponseEntity.ok(adminOrderService.listOrders(Optional.ofNullable(status), page, size));
   }
 
+  @GetMapping("/orders/export")
+  public ResponseEntity<StreamingResponseBody> exportOrders(
+      @RequestParam(required = false) OrderStatus status,
+      @RequestParam(defaultValue = "CSV") ExportFormat format) {
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getContentType()))
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment()
+                .filename("orders." + format.getExtension())
+                .build()
+                .toString())
+        .body(out -> adminOrderExportService.export(Optional.ofNullable(status), format, out));
+  }
+
   @GetMapping("/orders/{orderId}")
   public ResponseEntity<AdminOrderResponse> getOrder(@PathVariable Long orderId) {
     return ResponseEntity.ok(adminOrderService.getOrder(orderId));
@@ -0,0 +1,121 @@
+package com.finprodb.backendjava.admin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finprodb.backendjava.admin.dto.AdminOrderResponse;
+import com.finprodb.backendjava.common.CsvWriter;
+import com.finprodb.backendjava.common.ExportFormat;
+import com.finprodb.backendjava.order.Order;
+import com.finprodb.backendjava.order.OrderApprovalStatus;
+import com.finprodb.backendjava.order.OrderRepository;
+import com.finprodb.backendjava.order.OrderStatus;
+import com.finprodb.backendjava.user.User;
+import jakarta.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class AdminOrderExportService {
+  private final OrderRepository orderRepository;
+  private final EntityManager entityManager;
+  private final ObjectMapper objectMapper;
+
+  public AdminOrderExportService(
+      OrderRepository orderRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+    this.orderRepository = orderRepository;
+    this.entityManager = entityManager;
+    this.objectMapper = objectMapper;
+  }
+
+  @Transactional(readOnly = true)
+  public void export(Optional<OrderStatus> status, ExportFormat format, OutputStream out)
+      throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    CsvWriter csv = new CsvWriter(writer);
+    if (format == ExportFormat.CSV) {
+      csv.writeRow(
+          "id", "orderCode", "status", "approvalStatus", "approvedAt", "rejectedAt",
+          "approvedByUserId", "approvedByUsername", "totalAmount", "createdAt", "shippingAddress",
+          "shippingPhone", "courierPhone", "courierPlate", "userId", "username", "email");
+    }
+
+    try (Stream<Order> orders =
+        status
+            .map(orderRepository::streamForExportByStatus)
+            .orElseGet(orderRepository::streamForExport)) {
+      Iterator<Order> it = orders.iterator();
+      while (it.hasNext()) {
+        Order order = it.next();
+        AdminOrderResponse row = toRow(order);
+        detach(order);
+        if (format == ExportFormat.CSV) {
+          csv.writeRow(
+              row.getId(),
+              row.getOrderCode(),
+              row.getStatus(),
+              row.getApprovalStatus(),
+              row.getApprovedAt(),
+              row.getRejectedAt(),
+              row.getApprovedByUserId(),
+              row.getApprovedByUsername(),
+              row.getTotalAmount(),
+              row.getCreatedAt(),
+              row.getShippingAddress(),
+              row.getShippingPhone(),
+              row.getCourierPhone(),
+              row.getCourierPlate(),
+              row.getUserId(),
+              row.getUsername(),
+              row.getEmail());
+        } else {
+          writer.write(objectMapper.writeValueAsString(row));
+          writer.write('\n');
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  private void detach(Order order) {
+    entityManager.detach(order);
+    entityManager.detach(order.getUser());
+    if (order.getApprovedBy() != null) {
+      entityManager.detach(order.getApprovedBy());
+    }
+  }
+
+  // Payment status and line items would cost a query per order; the export sticks to the
+  // order row and the joined users.
+  private static AdminOrderResponse toRow(Order order) {
+    User user = order.getUser();
+    User approvedBy = order.getApprovedBy();
+    return new AdminOrderResponse(
+        order.getId(),
+        order.getOrderCode(),
+        order.getStatus(),
+        order.getApprovalStatus() != null ? order.getApprovalStatus() : OrderApprovalStatus.PENDING,
+        order.getApprovedAt(),
+        order.getRejectedAt(),
+        approvedBy != null ? approvedBy.getId() : null,
+        approvedBy != null ? approvedBy.getUsername() : null,
+        order.getTotalAmount(),
+        order.getCreatedAt(),
+        order.getShippingAddress(),
+        order.getShippingPhone(),
+        order.getCourierPhone(),
+        order.getCourierPlate(),
+        user.getId(),
+        user.getUsername(),
+        user.getEmail(),
+        null,
+        null);
+  }
+}
@@ -0,0 +1,25 @@
+package com.finprodb.backendjava.admin;
+
+import com.finprodb.backendjava.product.sales.ProductSalesService;
+import java.util.Map;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/sales")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminSalesController {
+  private final ProductSalesService productSalesService;
+
+  public AdminSalesController(ProductSalesService productSalesService) {
+    this.productSalesService = productSalesService;
+  }
+
+  @PostMapping("/rebuild")
+  public ResponseEntity<Map<String, Object>> rebuild() {
+    return ResponseEntity.ok(productSalesService.rebuild());
+  }
+}
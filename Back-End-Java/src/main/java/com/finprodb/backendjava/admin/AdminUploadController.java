@@ -0,0 +1,36 @@
+package com.finprodb.backendjava.admin;
+
+import com.finprodb.backendjava.upload.UploadSweepMode;
+import com.finprodb.backendjava.upload.UploadSweeper;
+import java.util.Map;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/uploads")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminUploadController {
+  private final UploadSweeper uploadSweeper;
+
+  public AdminUploadController(UploadSweeper uploadSweeper) {
+    this.uploadSweeper = uploadSweeper;
+  }
+
+  // Defaults to a dry run: the report lists what would be removed without touching any file.
+  @PostMapping("/sweep")
+  public ResponseEntity<Map<String, Object>> sweep(
+      @RequestParam(defaultValue = "DRY_RUN") UploadSweepMode mode) {
+    return ResponseEntity.ok(uploadSweeper.sweep(mode));
+  }
+
+  @GetMapping("/sweep")
+  public ResponseEntity<Map<String, Object>> lastSweep() {
+    Map<String, Object> report = uploadSweeper.lastReport();
+    return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
+  }
+}
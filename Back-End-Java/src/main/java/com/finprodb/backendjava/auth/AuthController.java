@@ -3,8 +3,12 @@ package com.finprodb.backendjava.auth;
 import com.finprodb.backendjava.auth.dto.AuthResponse;
 import com.finprodb.backendjava.auth.dto.LoginRequest;
 import com.finprodb.backendjava.auth.dto.RegisterRequest;
+import com.finprodb.backendjava.cart.GuestCartTokens;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,18 +18,40 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/auth")
 public class AuthController {
   private final AuthService authService;
+  private final GuestCartTokens guestCartTokens;
 
-  public AuthController(AuthService authService) {
+  public AuthController(AuthService authService, GuestCartTokens guestCartTokens) {
     this.authService = authService;
+    this.guestCartTokens = guestCartTokens;
   }
 
   @PostMapping("/register")
-  public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest req) {
-    return ResponseEntity.ok(authService.register(req));
+  public ResponseEntity<AuthResponse> register(
+      @Valid @RequestBody RegisterRequest req,
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String guestCart,
+      HttpServletRequest request) {
+    return withGuestCartMerged(authService.register(req), guestCart, request);
   }
 
   @PostMapping("/login")
-  public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest req) {
-    return ResponseEntity.ok(authService.login(req));
+  public ResponseEntity<AuthResponse> login(
+      @Valid @RequestBody LoginRequest req,
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String guestCart,
+      HttpServletRequest request) {
+    return withGuestCartMerged(authService.login(req), guestCart, request);
+  }
+
+  // Once the guest cart lives in the user's cart, drop the cookie that pointed at it. After a
+  // failed merge the cookie stays, so the guest cart is not lost.
+  private ResponseEntity<AuthResponse> withGuestCartMerged(
+      AuthResponse body, String guestCart, HttpServletRequest request) {
+    if (guestCart == null || !authService.mergeGuestCart(body.getUserId(), guestCart)) {
+      return ResponseEntity.ok(body);
+    }
+    return ResponseEntity.ok()
+        .header(
+            HttpHeaders.SET_COOKIE,
+            guestCartTokens.expiredCookie(request.isSecure()).toString())
+        .body(body);
   }
 }
@@ -3,11 +3,14 @@ package com.finprodb.backendjava.auth;
 import com.finprodb.backendjava.auth.dto.AuthResponse;
 import com.finprodb.backendjava.auth.dto.LoginRequest;
 import com.finprodb.backendjava.auth.dto.RegisterRequest;
+import com.finprodb.backendjava.cart.GuestCartService;
 import com.finprodb.backendjava.security.JwtService;
 import com.finprodb.backendjava.user.Role;
 import com.finprodb.backendjava.user.User;
 import com.finprodb.backendjava.user.UserRepository;
 import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -15,20 +18,25 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class AuthService {
+  private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+
   private final UserRepository userRepository;
   private final PasswordEncoder passwordEncoder;
   private final AuthenticationManager authenticationManager;
   private final JwtService jwtService;
+  private final GuestCartService guestCartService;
 
   public AuthService(
       UserRepository userRepository,
       PasswordEncoder passwordEncoder,
       AuthenticationManager authenticationManager,
-      JwtService jwtService) {
+      JwtService jwtService,
+      GuestCartService guestCartService) {
     this.userRepository = userRepository;
     this.passwordEncoder = passwordEncoder;
     this.authenticationManager = authenticationManager;
     this.jwtService = jwtService;
+    this.guestCartService = guestCartService;
   }
 
   public AuthResponse register(RegisterRequest req) {
@@ -86,4 +94,17 @@ public class AuthService {
         user.getEmail(),
         user.getRole().name());
   }
+
+  // Moves the cart behind the guest_cart cookie into the user's cart once they are signed in.
+  // A failed merge must not fail the login (on register the user row is already saved), so it
+  // is logged and the guest cart stays where it is for the next login to pick up.
+  public boolean mergeGuestCart(Long userId, String guestCartToken) {
+    try {
+      guestCartService.mergeInto(userId, guestCartToken);
+      return true;
+    } catch (RuntimeException e) {
+      log.warn("Could not merge the guest cart into the cart of user {}", userId, e);
+      return false;
+    }
+  }
 }
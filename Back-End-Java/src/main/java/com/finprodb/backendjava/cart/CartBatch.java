@@ -0,0 +1,76 @@
+package com.finprodb.backendjava.cart;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Edits applied to a copy of one cart, so a CartStore can check a whole batch before it writes
+// anything. Adds for products the cart has never held become inserts once the batch is done.
+public final class CartBatch {
+  private CartState state;
+  private final Set<Long> deleting;
+  private final Map<Long, Integer> inserts = new LinkedHashMap<>();
+
+  CartBatch(CartState state) {
+    this(state, Set.of());
+  }
+
+  // `deleting` holds the products whose removed lines a flush is deleting right now.
+  CartBatch(CartState state, Set<Long> deleting) {
+    this.state = state;
+    this.deleting = deleting;
+  }
+
+  public void add(Long productId, int quantity) {
+    if (inserts.containsKey(productId)) {
+      inserts.merge(productId, quantity, Integer::sum);
+      return;
+    }
+    CartLine line = state.byProduct(productId);
+    if (line == null) {
+      line = state.removedByProduct(productId);
+      if (line != null) {
+        line = line.withQuantity(0);
+      }
+    }
+    if (line != null) {
+      state = state.with(line.withQuantity(line.getQuantity() + quantity), false);
+    } else {
+      inserts.put(productId, quantity);
+    }
+  }
+
+  public void setQuantity(Long lineId, int quantity) {
+    state = state.with(line(lineId).withQuantity(quantity), false);
+  }
+
+  public void remove(Long lineId) {
+    state = state.without(line(lineId));
+  }
+
+  CartState state() {
+    return state;
+  }
+
+  // Product id to quantity, in the order the products were first added.
+  Map<Long, Integer> inserts() {
+    return inserts;
+  }
+
+  // Inserts whose product's old row may still be there, waiting for its delete; the row must take
+  // the inserted quantity rather than add to what it held before the removal.
+  Set<Long> replacing() {
+    Set<Long> result = new HashSet<>(inserts.keySet());
+    result.retainAll(deleting);
+    return result;
+  }
+
+  private CartLine line(Long lineId) {
+    CartLine line = state.byId(lineId);
+    if (line == null) {
+      throw new IllegalArgumentException("Cart item not found");
+    }
+    return line;
+  }
+}
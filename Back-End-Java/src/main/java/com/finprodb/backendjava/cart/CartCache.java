@@ -0,0 +1,14 @@
+package com.finprodb.backendjava.cart;
+
+// Where the write-behind store keeps cart states. A shared cache would have to hand back exactly
+// what was put, and only drop entries that evictIdle() is allowed to drop.
+public interface CartCache {
+  CartState get(Long userId);
+
+  void put(Long userId, CartState state);
+
+  void remove(Long userId);
+
+  // Drops carts that are clean and have not been used for a while; they reload from cart_items.
+  void evictIdle();
+}
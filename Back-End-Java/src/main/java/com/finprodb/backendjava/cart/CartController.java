@@ -2,6 +2,7 @@ package com.finprodb.backendjava.cart;
 
 import com.finprodb.backendjava.cart.dto.CartItemResponse;
 import com.finprodb.backendjava.cart.dto.AddCartItemRequest;
+import com.finprodb.backendjava.cart.dto.CartBatchRequest;
 import com.finprodb.backendjava.cart.dto.UpdateCartItemRequest;
 import com.finprodb.backendjava.security.SecurityUtils;
 import com.finprodb.backendjava.user.User;
@@ -42,6 +43,17 @@ public class CartController {
     return ResponseEntity.ok(toResponse(cartService.addItem(user, req.getProductId(), req.getQuantity())));
   }
 
+  // Applies add/update/remove operations together and returns the resulting cart.
+  @PostMapping("/batch")
+  public ResponseEntity<List<CartItemResponse>> batch(@Valid @RequestBody CartBatchRequest req) {
+    User user = SecurityUtils.getCurrentUser();
+    List<CartItemResponse> items =
+        cartService.applyBatch(user, req.getOperations()).stream()
+            .map(CartController::toResponse)
+            .collect(Collectors.toList());
+    return ResponseEntity.ok(items);
+  }
+
   @PatchMapping("/items/{cartItemId}")
   public ResponseEntity<CartItemResponse> updateQty(
       @PathVariable Long cartItemId, @Valid @RequestBody UpdateCartItemRequest req) {
@@ -63,7 +75,7 @@ public class CartController {
     return ResponseEntity.noContent().build();
   }
 
-  private static CartItemResponse toResponse(CartItem item) {
+  static CartItemResponse toResponse(CartItem item) {
     BigDecimal price = item.getProduct().getPrice();
     BigDecimal subtotal = price.multiply(BigDecimal.valueOf(item.getQuantity()));
     return new CartItemResponse(
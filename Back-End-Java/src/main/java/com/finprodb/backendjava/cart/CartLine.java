@@ -0,0 +1,30 @@
+package com.finprodb.backendjava.cart;
+
+// One cart line as a CartStore holds it; product details are looked up when a response is built.
+public final class CartLine {
+  private final Long id;
+  private final Long productId;
+  private final int quantity;
+
+  public CartLine(Long id, Long productId, int quantity) {
+    this.id = id;
+    this.productId = productId;
+    this.quantity = quantity;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public Long getProductId() {
+    return productId;
+  }
+
+  public int getQuantity() {
+    return quantity;
+  }
+
+  CartLine withQuantity(int quantity) {
+    return new CartLine(id, productId, quantity);
+  }
+}
@@ -1,27 +1,51 @@
 package com.finprodb.backendjava.cart;
 
+import com.finprodb.backendjava.cart.dto.CartBatchRequest;
 import com.finprodb.backendjava.product.Product;
 import com.finprodb.backendjava.product.ProductRepository;
 import com.finprodb.backendjava.user.User;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class CartService {
-  private final CartItemRepository cartItemRepository;
+  private final CartStore cartStore;
   private final ProductRepository productRepository;
 
-  public CartService(CartItemRepository cartItemRepository, ProductRepository productRepository) {
-    this.cartItemRepository = cartItemRepository;
+  public CartService(CartStore cartStore, ProductRepository productRepository) {
+    this.cartStore = cartStore;
     this.productRepository = productRepository;
   }
 
   public List<CartItem> getCart(User user) {
-    return cartItemRepository.findByUser(user);
+    List<CartLine> lines = cartStore.lines(user.getId());
+    if (lines.isEmpty()) {
+      return List.of();
+    }
+    List<Long> productIds = new ArrayList<>(lines.size());
+    for (CartLine line : lines) {
+      productIds.add(line.getProductId());
+    }
+    Map<Long, Product> products = new HashMap<>();
+    for (Product product : productRepository.findAllById(productIds)) {
+      products.put(product.getId(), product);
+    }
+    List<CartItem> items = new ArrayList<>(lines.size());
+    for (CartLine line : lines) {
+      Product product = products.get(line.getProductId());
+      if (product != null) {
+        items.add(toItem(user, line, product));
+      }
+    }
+    return items;
   }
 
-  @Transactional
   public CartItem addItem(User user, Long productId, int quantity) {
     Product product =
         productRepository
@@ -32,53 +56,103 @@ public class CartService {
       throw new IllegalArgumentException("Product is inactive");
     }
 
-    CartItem item =
-        cartItemRepository
-            .findByUserAndProduct(user, product)
-            .orElseGet(
-                () -> {
-                  CartItem newItem = new CartItem();
-                  newItem.setUser(user);
-                  newItem.setProduct(product);
-                  newItem.setQuantity(0);
-                  return newItem;
-                });
-
-    item.setQuantity(item.getQuantity() + quantity);
-    return cartItemRepository.save(item);
+    return toItem(user, cartStore.add(user.getId(), productId, quantity), product);
   }
 
-  @Transactional
   public CartItem updateQuantity(User user, Long cartItemId, int quantity) {
-    CartItem item =
-        cartItemRepository
-            .findById(cartItemId)
+    // Lines are looked up within the user's own cart, so another user's id is simply not found.
+    CartLine line =
+        cartStore
+            .setQuantity(user.getId(), cartItemId, quantity)
             .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+    Product product =
+        productRepository
+            .findById(line.getProductId())
+            .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+    return toItem(user, line, product);
+  }
 
-    if (!item.getUser().getId().equals(user.getId())) {
-      throw new IllegalArgumentException("Forbidden");
+  // All operations or none; products are checked up front with one query for the whole batch.
+  @Transactional
+  public List<CartItem> applyBatch(User user, List<CartBatchRequest.Operation> operations) {
+    Set<Long> productIds = new HashSet<>();
+    for (CartBatchRequest.Operation op : operations) {
+      requireFields(op);
+      if (op.getType() == CartBatchRequest.Type.ADD) {
+        productIds.add(op.getProductId());
+      }
+    }
+    Set<Long> added = new HashSet<>(productIds);
+    for (CartLine line : cartStore.lines(user.getId())) {
+      productIds.add(line.getProductId());
+    }
+    Map<Long, Product> products = new HashMap<>();
+    for (Product product : productRepository.findAllById(productIds)) {
+      products.put(product.getId(), product);
+    }
+    for (Long productId : added) {
+      Product product = products.get(productId);
+      if (product == null) {
+        throw new IllegalArgumentException("Product not found");
+      }
+      if (product.getActive() == null || !product.getActive()) {
+        throw new IllegalArgumentException("Product is inactive");
+      }
     }
 
-    item.setQuantity(quantity);
-    return cartItemRepository.save(item);
+    List<CartLine> lines =
+        cartStore.apply(
+            user.getId(),
+            batch -> {
+              for (CartBatchRequest.Operation op : operations) {
+                switch (op.getType()) {
+                  case ADD -> batch.add(op.getProductId(), op.getQuantity());
+                  case UPDATE -> batch.setQuantity(op.getCartItemId(), op.getQuantity());
+                  case REMOVE -> batch.remove(op.getCartItemId());
+                }
+              }
+            });
+
+    List<CartItem> items = new ArrayList<>(lines.size());
+    for (CartLine line : lines) {
+      Product product = products.get(line.getProductId());
+      if (product != null) {
+        items.add(toItem(user, line, product));
+      }
+    }
+    return items;
   }
 
-  @Transactional
   public void removeItem(User user, Long cartItemId) {
-    CartItem item =
-        cartItemRepository
-            .findById(cartItemId)
-            .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
-
-    if (!item.getUser().getId().equals(user.getId())) {
-      throw new IllegalArgumentException("Forbidden");
+    if (!cartStore.remove(user.getId(), cartItemId)) {
+      throw new IllegalArgumentException("Cart item not found");
     }
-
-    cartItemRepository.delete(item);
   }
 
-  @Transactional
   public void clear(User user) {
-    cartItemRepository.deleteByUser(user);
+    cartStore.clear(user.getId());
+  }
+
+  private static void requireFields(CartBatchRequest.Operation op) {
+    boolean add = op.getType() == CartBatchRequest.Type.ADD;
+    if (add && op.getProductId() == null) {
+      throw new IllegalArgumentException("productId is required for ADD");
+    }
+    if (!add && op.getCartItemId() == null) {
+      throw new IllegalArgumentException("cartItemId is required for " + op.getType());
+    }
+    if (op.getType() != CartBatchRequest.Type.REMOVE && op.getQuantity() == null) {
+      throw new IllegalArgumentException("quantity is required for " + op.getType());
+    }
+  }
+
+  // Detached view of a line for responses and checkout; never saved.
+  static CartItem toItem(User user, CartLine line, Product product) {
+    CartItem item = new CartItem();
+    item.setId(line.getId());
+    item.setUser(user);
+    item.setProduct(product);
+    item.setQuantity(line.getQuantity());
+    return item;
   }
 }
@@ -0,0 +1,143 @@
+package com.finprodb.backendjava.cart;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable snapshot of one user's cart in the write-behind store, together with what cart_items
+// has not seen yet: lines whose quantity changed and lines removed since the last flush. Every
+// change builds a new snapshot, so readers never need a lock and a shared cache could store it.
+public final class CartState {
+  private static final CartState EMPTY = new CartState(List.of(), Set.of(), Map.of());
+
+  private final List<CartLine> lines;
+  private final Set<Long> changed;
+  private final Map<Long, CartLine> removed;
+
+  private CartState(List<CartLine> lines, Set<Long> changed, Map<Long, CartLine> removed) {
+    this.lines = lines;
+    this.changed = changed;
+    this.removed = removed;
+  }
+
+  static CartState empty() {
+    return EMPTY;
+  }
+
+  static CartState of(List<CartLine> lines) {
+    return new CartState(List.copyOf(lines), Set.of(), Map.of());
+  }
+
+  public List<CartLine> getLines() {
+    return lines;
+  }
+
+  public boolean isDirty() {
+    return !changed.isEmpty() || !removed.isEmpty();
+  }
+
+  public List<CartLine> changedLines() {
+    List<CartLine> result = new ArrayList<>(changed.size());
+    for (CartLine line : lines) {
+      if (changed.contains(line.getId())) {
+        result.add(line);
+      }
+    }
+    return result;
+  }
+
+  public Collection<CartLine> removedLines() {
+    return removed.values();
+  }
+
+  CartLine byId(Long id) {
+    for (CartLine line : lines) {
+      if (line.getId().equals(id)) {
+        return line;
+      }
+    }
+    return null;
+  }
+
+  CartLine byProduct(Long productId) {
+    for (CartLine line : lines) {
+      if (line.getProductId().equals(productId)) {
+        return line;
+      }
+    }
+    return null;
+  }
+
+  // A line removed since the last flush still owns its cart_items row, so adding the product
+  // again revives it rather than inserting a duplicate.
+  CartLine removedByProduct(Long productId) {
+    for (CartLine line : removed.values()) {
+      if (line.getProductId().equals(productId)) {
+        return line;
+      }
+    }
+    return null;
+  }
+
+  // Replaces the line with the same id, or appends it. A line that is already in cart_items
+  // as given is added clean; anything else is marked for the next flush.
+  CartState with(CartLine line, boolean persisted) {
+    List<CartLine> next = new ArrayList<>(lines.size() + 1);
+    boolean replaced = false;
+    for (CartLine l : lines) {
+      if (l.getId().equals(line.getId())) {
+        next.add(line);
+        replaced = true;
+      } else {
+        next.add(l);
+      }
+    }
+    if (!replaced) {
+      next.add(line);
+    }
+    Set<Long> nextChanged = new HashSet<>(changed);
+    if (persisted) {
+      nextChanged.remove(line.getId());
+    } else {
+      nextChanged.add(line.getId());
+    }
+    Map<Long, CartLine> nextRemoved = new LinkedHashMap<>(removed);
+    nextRemoved.remove(line.getId());
+    return new CartState(List.copyOf(next), Set.copyOf(nextChanged), Map.copyOf(nextRemoved));
+  }
+
+  CartState without(CartLine line) {
+    List<CartLine> next = new ArrayList<>(lines);
+    next.removeIf(l -> l.getId().equals(line.getId()));
+    Set<Long> nextChanged = new HashSet<>(changed);
+    nextChanged.remove(line.getId());
+    Map<Long, CartLine> nextRemoved = new LinkedHashMap<>(removed);
+    nextRemoved.put(line.getId(), line);
+    return new CartState(List.copyOf(next), Set.copyOf(nextChanged), Map.copyOf(nextRemoved));
+  }
+
+  CartState flushed() {
+    return isDirty() ? new CartState(lines, Set.of(), Map.of()) : this;
+  }
+
+  // Puts back what a failed flush of the given snapshot took away. Lines that are gone from
+  // this state stay gone; their stale quantities must not come back.
+  CartState unflushed(CartState failed) {
+    Set<Long> nextChanged = new HashSet<>(changed);
+    for (Long id : failed.changed) {
+      if (byId(id) != null) {
+        nextChanged.add(id);
+      }
+    }
+    Map<Long, CartLine> nextRemoved = new LinkedHashMap<>(failed.removed);
+    for (CartLine line : lines) {
+      nextRemoved.remove(line.getId());
+    }
+    nextRemoved.putAll(removed);
+    return new CartState(lines, Set.copyOf(nextChanged), Map.copyOf(nextRemoved));
+  }
+}
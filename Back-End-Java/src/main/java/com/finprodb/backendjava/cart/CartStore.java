@@ -0,0 +1,30 @@
+package com.finprodb.backendjava.cart;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Where carts live between requests, picked with app.cart.store. Whatever the implementation, a
+// call sees the effect of every earlier call for the same user (read-your-writes), but cart_items
+// may trail behind: read carts through the store, not the table.
+public interface CartStore {
+  List<CartLine> lines(Long userId);
+
+  // Adds to the user's line for the product, creating the line when there is none.
+  CartLine add(Long userId, Long productId, int quantity);
+
+  // Empty when the user has no line with that id.
+  Optional<CartLine> setQuantity(Long userId, Long lineId, int quantity);
+
+  boolean remove(Long userId, Long lineId);
+
+  // Runs the edits against the user's cart and applies all of them or none; returns the cart.
+  List<CartLine> apply(Long userId, Consumer<CartBatch> edits);
+
+  // Adds each product id to quantity entry to the cart, e.g. a guest cart at login.
+  void merge(Long userId, Map<Long, Integer> quantities);
+
+  // Empties the cart in cart_items as part of the caller's transaction, if there is one.
+  void clear(Long userId);
+}
@@ -0,0 +1,189 @@
+package com.finprodb.backendjava.cart;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Plain JDBC access to cart_items for the cart stores: lines are (id, product_id, quantity)
+// triples, so no entity or product proxy is loaded just to move a quantity around.
+// Every call runs in a transaction so that, inside a request, it reuses the connection the open
+// EntityManager already holds: the write-behind store calls in while holding a user's lock, and
+// waiting on the pool for a second connection there can starve every request thread.
+@Component
+@Transactional
+public class CartTable {
+  // Adding to a cart is one statement whether or not the line exists, so concurrent adds of the
+  // same product meet on uk_cart_user_product instead of racing a lookup.
+  private static final String UPSERT =
+      "insert into cart_items (user_id, product_id, quantity, created_at, updated_at)"
+          + " values (?, ?, ?, ?, ?)"
+          + " on duplicate key update quantity = quantity + ?, updated_at = ?";
+  // Re-adds a product whose removed line is still being deleted by a flush: the old row may not
+  // be gone yet, and the quantity it holds has already left the cart.
+  private static final String UPSERT_REPLACE =
+      "insert into cart_items (user_id, product_id, quantity, created_at, updated_at)"
+          + " values (?, ?, ?, ?, ?)"
+          + " on duplicate key update quantity = ?, updated_at = ?";
+  private static final String UPDATE_QUANTITY =
+      "update cart_items set quantity = ?, updated_at = ? where id = ? and user_id = ?";
+  private static final String DELETE = "delete from cart_items where id = ? and user_id = ?";
+  private static final RowMapper<CartLine> LINE =
+      (rs, i) -> new CartLine(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public CartTable(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public List<CartLine> load(Long userId) {
+    return jdbcTemplate.query(
+        "select id, product_id, quantity from cart_items where user_id = ? order by id",
+        LINE,
+        userId);
+  }
+
+  public CartLine upsert(Long userId, Long productId, int quantity) {
+    return upsertAll(userId, Map.of(productId, quantity)).get(0);
+  }
+
+  public List<CartLine> upsertAll(Long userId, Map<Long, Integer> quantities) {
+    return upsertAll(userId, quantities, Set.of());
+  }
+
+  // Adds each product id to quantity entry to the cart in one batched statement and returns the
+  // resulting lines in the same order; products in `replacing` get the given quantity instead of
+  // adding to an existing row. The upserted rows stay locked until the transaction ends, so the
+  // read-back sees exactly what this call left.
+  public List<CartLine> upsertAll(
+      Long userId, Map<Long, Integer> quantities, Set<Long> replacing) {
+    if (quantities.isEmpty()) {
+      return List.of();
+    }
+    List<Map.Entry<Long, Integer>> adds = new ArrayList<>(quantities.size());
+    List<Map.Entry<Long, Integer>> replaces = new ArrayList<>();
+    for (Map.Entry<Long, Integer> row : quantities.entrySet()) {
+      (replacing.contains(row.getKey()) ? replaces : adds).add(row);
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    upsert(UPSERT, userId, adds, now);
+    upsert(UPSERT_REPLACE, userId, replaces, now);
+
+    List<Object> args = new ArrayList<>(quantities.size() + 1);
+    args.add(userId);
+    args.addAll(quantities.keySet());
+    Map<Long, CartLine> byProduct = new HashMap<>();
+    for (CartLine line :
+        jdbcTemplate.query(
+            "select id, product_id, quantity from cart_items where user_id = ? and product_id in ("
+                + String.join(", ", Collections.nCopies(quantities.size(), "?"))
+                + ")",
+            LINE,
+            args.toArray())) {
+      byProduct.put(line.getProductId(), line);
+    }
+    List<CartLine> lines = new ArrayList<>(quantities.size());
+    for (Long productId : quantities.keySet()) {
+      lines.add(byProduct.get(productId));
+    }
+    return lines;
+  }
+
+  private void upsert(
+      String sql, Long userId, List<Map.Entry<Long, Integer>> rows, Timestamp now) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(
+        sql,
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setLong(1, userId);
+          ps.setLong(2, row.getKey());
+          ps.setInt(3, row.getValue());
+          ps.setTimestamp(4, now, utc());
+          ps.setTimestamp(5, now, utc());
+          ps.setInt(6, row.getValue());
+          ps.setTimestamp(7, now, utc());
+        });
+  }
+
+  public int setQuantity(Long userId, Long lineId, int quantity) {
+    Timestamp now = Timestamp.from(Instant.now());
+    return jdbcTemplate.update(
+        con -> {
+          PreparedStatement ps = con.prepareStatement(UPDATE_QUANTITY);
+          ps.setInt(1, quantity);
+          ps.setTimestamp(2, now, utc());
+          ps.setLong(3, lineId);
+          ps.setLong(4, userId);
+          return ps;
+        });
+  }
+
+  public int delete(Long userId, Long lineId) {
+    return jdbcTemplate.update(DELETE, lineId, userId);
+  }
+
+  public void deleteAll(Long userId) {
+    jdbcTemplate.update("delete from cart_items where user_id = ?", userId);
+  }
+
+  // Writes what the given carts changed since their last flush: one batched statement for the
+  // quantities and one for the removed lines, across all of them. A removed line that was
+  // upserted again after `removedBefore` is kept; the add that revived it came later.
+  public void write(Map<Long, CartState> carts, Instant removedBefore) {
+    List<Object[]> quantities = new ArrayList<>();
+    List<Object[]> deletes = new ArrayList<>();
+    for (Map.Entry<Long, CartState> cart : carts.entrySet()) {
+      for (CartLine line : cart.getValue().changedLines()) {
+        quantities.add(new Object[] {line.getQuantity(), line.getId(), cart.getKey()});
+      }
+      for (CartLine line : cart.getValue().removedLines()) {
+        deletes.add(new Object[] {line.getId(), cart.getKey()});
+      }
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    if (!quantities.isEmpty()) {
+      jdbcTemplate.batchUpdate(
+          UPDATE_QUANTITY,
+          quantities,
+          quantities.size(),
+          (ps, row) -> {
+            ps.setInt(1, (Integer) row[0]);
+            ps.setTimestamp(2, now, utc());
+            ps.setLong(3, (Long) row[1]);
+            ps.setLong(4, (Long) row[2]);
+          });
+    }
+    if (!deletes.isEmpty()) {
+      Timestamp cutoff = Timestamp.from(removedBefore);
+      jdbcTemplate.batchUpdate(
+          DELETE + " and updated_at < ?",
+          deletes,
+          deletes.size(),
+          (ps, row) -> {
+            ps.setLong(1, (Long) row[0]);
+            ps.setLong(2, (Long) row[1]);
+            ps.setTimestamp(3, cutoff, utc());
+          });
+    }
+  }
+
+  private static Calendar utc() {
+    return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+  }
+}
@@ -0,0 +1,70 @@
+package com.finprodb.backendjava.cart;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Writes every change straight to cart_items. The default store, and the only one safe to run on
+// more than one node, since nothing is kept between requests.
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+  private final CartTable cartTable;
+
+  public DatabaseCartStore(CartTable cartTable) {
+    this.cartTable = cartTable;
+  }
+
+  @Override
+  public List<CartLine> lines(Long userId) {
+    return cartTable.load(userId);
+  }
+
+  @Override
+  public CartLine add(Long userId, Long productId, int quantity) {
+    return cartTable.upsert(userId, productId, quantity);
+  }
+
+  @Override
+  public Optional<CartLine> setQuantity(Long userId, Long lineId, int quantity) {
+    if (cartTable.setQuantity(userId, lineId, quantity) == 0) {
+      return Optional.empty();
+    }
+    return cartTable.load(userId).stream().filter(l -> l.getId().equals(lineId)).findFirst();
+  }
+
+  @Override
+  public boolean remove(Long userId, Long lineId) {
+    return cartTable.delete(userId, lineId) > 0;
+  }
+
+  @Override
+  @Transactional
+  public List<CartLine> apply(Long userId, Consumer<CartBatch> edits) {
+    Instant loaded = Instant.now();
+    CartBatch batch = new CartBatch(CartState.of(cartTable.load(userId)));
+    edits.accept(batch);
+    CartState next = batch.state();
+    cartTable.write(Map.of(userId, next), loaded);
+    for (CartLine line : cartTable.upsertAll(userId, batch.inserts())) {
+      next = next.with(line, true);
+    }
+    return next.getLines();
+  }
+
+  // One batched upsert, whatever the cart already holds.
+  @Override
+  public void merge(Long userId, Map<Long, Integer> quantities) {
+    cartTable.upsertAll(userId, quantities);
+  }
+
+  @Override
+  public void clear(Long userId) {
+    cartTable.deleteAll(userId);
+  }
+}
@@ -0,0 +1,121 @@
+package com.finprodb.backendjava.cart;
+
+import com.finprodb.backendjava.cart.dto.AddCartItemRequest;
+import com.finprodb.backendjava.cart.dto.CartItemResponse;
+import com.finprodb.backendjava.cart.dto.UpdateCartItemRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Cart for visitors who have not logged in, identified by the signed guest_cart cookie. The
+// cookie is set on the first add and merged into the user's cart on login or register. Every
+// request that uses the cart sends the cookie again, since each use also extends the cart's TTL.
+@RestController
+@RequestMapping("/api/guest-cart")
+public class GuestCartController {
+  private final GuestCartService guestCartService;
+  private final GuestCartTokens tokens;
+
+  public GuestCartController(GuestCartService guestCartService, GuestCartTokens tokens) {
+    this.guestCartService = guestCartService;
+    this.tokens = tokens;
+  }
+
+  @GetMapping
+  public ResponseEntity<List<CartItemResponse>> getCart(
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String token,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+    String guestId = tokens.verify(token).orElse(null);
+    if (guestId == null) {
+      return ResponseEntity.ok(List.of());
+    }
+    List<CartItemResponse> items =
+        guestCartService.getCart(guestId).stream()
+            .map(CartController::toResponse)
+            .collect(Collectors.toList());
+    refreshCookie(token, request, response);
+    return ResponseEntity.ok(items);
+  }
+
+  @PostMapping("/items")
+  public ResponseEntity<CartItemResponse> addItem(
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String token,
+      @Valid @RequestBody AddCartItemRequest req,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+    String guestId = tokens.verify(token).orElse(null);
+    if (guestId == null) {
+      token = tokens.issue();
+      guestId = tokens.verify(token).orElseThrow();
+    }
+    // A new cart counts against the caller's address, so no client can push out everyone else's.
+    // Behind the reverse proxy that is the forwarded client address (server.forward-headers-*).
+    CartItem item =
+        guestCartService.addItem(
+            guestId, request.getRemoteAddr(), req.getProductId(), req.getQuantity());
+    refreshCookie(token, request, response);
+    return ResponseEntity.ok(CartController.toResponse(item));
+  }
+
+  @PatchMapping("/items/{cartItemId}")
+  public ResponseEntity<CartItemResponse> updateQty(
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String token,
+      @PathVariable Long cartItemId,
+      @Valid @RequestBody UpdateCartItemRequest req,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+    CartItem item = guestCartService.updateQuantity(guestId(token), cartItemId, req.getQuantity());
+    refreshCookie(token, request, response);
+    return ResponseEntity.ok(CartController.toResponse(item));
+  }
+
+  @DeleteMapping("/items/{cartItemId}")
+  public ResponseEntity<Void> remove(
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String token,
+      @PathVariable Long cartItemId,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+    guestCartService.removeItem(guestId(token), cartItemId);
+    refreshCookie(token, request, response);
+    return ResponseEntity.noContent().build();
+  }
+
+  // The cart is gone, so the cookie that pointed at it goes too.
+  @DeleteMapping
+  public ResponseEntity<Void> clear(
+      @CookieValue(name = GuestCartTokens.COOKIE, required = false) String token,
+      HttpServletRequest request) {
+    tokens.verify(token).ifPresent(guestCartService::clear);
+    return ResponseEntity.noContent()
+        .header(HttpHeaders.SET_COOKIE, tokens.expiredCookie(request.isSecure()).toString())
+        .build();
+  }
+
+  // Slides the cookie's expiry along with the cart's, which every use of the cart extends.
+  private void refreshCookie(
+      String token, HttpServletRequest request, HttpServletResponse response) {
+    response.addHeader(
+        HttpHeaders.SET_COOKIE, tokens.cookie(token, request.isSecure()).toString());
+  }
+
+  // Without a valid cookie there is no cart, so there is no line to change either.
+  private String guestId(String token) {
+    return tokens
+        .verify(token)
+        .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+  }
+}
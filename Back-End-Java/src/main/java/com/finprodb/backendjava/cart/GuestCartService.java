@@ -0,0 +1,120 @@
+package com.finprodb.backendjava.cart;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.ProductRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.stereotype.Service;
+
+@Service
+public class GuestCartService {
+  private final GuestCartStore guestCarts;
+  private final GuestCartTokens tokens;
+  private final CartStore cartStore;
+  private final ProductRepository productRepository;
+
+  public GuestCartService(
+      GuestCartStore guestCarts,
+      GuestCartTokens tokens,
+      CartStore cartStore,
+      ProductRepository productRepository) {
+    this.guestCarts = guestCarts;
+    this.tokens = tokens;
+    this.cartStore = cartStore;
+    this.productRepository = productRepository;
+  }
+
+  public List<CartItem> getCart(String guestId) {
+    List<CartLine> lines = guestCarts.lines(guestId);
+    if (lines.isEmpty()) {
+      return List.of();
+    }
+    Map<Long, Product> products = products(guestCarts.quantities(guestId).keySet());
+    List<CartItem> items = new ArrayList<>(lines.size());
+    for (CartLine line : lines) {
+      Product product = products.get(line.getProductId());
+      if (product != null) {
+        items.add(CartService.toItem(null, line, product));
+      }
+    }
+    return items;
+  }
+
+  public CartItem addItem(String guestId, String client, Long productId, int quantity) {
+    Product product =
+        productRepository
+            .findById(productId)
+            .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+
+    if (product.getActive() == null || !product.getActive()) {
+      throw new IllegalArgumentException("Product is inactive");
+    }
+
+    return CartService.toItem(null, guestCarts.add(guestId, client, productId, quantity), product);
+  }
+
+  public CartItem updateQuantity(String guestId, Long cartItemId, int quantity) {
+    CartLine line =
+        guestCarts
+            .setQuantity(guestId, cartItemId, quantity)
+            .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+    Product product =
+        productRepository
+            .findById(line.getProductId())
+            .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+    return CartService.toItem(null, line, product);
+  }
+
+  public void removeItem(String guestId, Long cartItemId) {
+    if (!guestCarts.remove(guestId, cartItemId)) {
+      throw new IllegalArgumentException("Cart item not found");
+    }
+  }
+
+  public void clear(String guestId) {
+    guestCarts.clear(guestId);
+  }
+
+  // Moves the guest cart behind the cookie token into the user's cart. Products that went
+  // inactive or away since they were added are dropped rather than failing the login. The cart
+  // is taken out of the store first, so two logins with one cookie cannot both merge it; if the
+  // merge fails its lines go back.
+  public void mergeInto(Long userId, String token) {
+    String guestId = tokens.verify(token).orElse(null);
+    if (guestId == null) {
+      return;
+    }
+    Map<Long, Integer> quantities = guestCarts.take(guestId);
+    if (quantities.isEmpty()) {
+      return;
+    }
+    try {
+      Map<Long, Product> products = products(quantities.keySet());
+      Map<Long, Integer> merged = new LinkedHashMap<>();
+      quantities.forEach(
+          (productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product != null && Boolean.TRUE.equals(product.getActive())) {
+              merged.put(productId, quantity);
+            }
+          });
+      if (!merged.isEmpty()) {
+        cartStore.merge(userId, merged);
+      }
+    } catch (RuntimeException e) {
+      guestCarts.restore(guestId, quantities);
+      throw e;
+    }
+  }
+
+  private Map<Long, Product> products(Iterable<Long> productIds) {
+    Map<Long, Product> products = new HashMap<>();
+    for (Product product : productRepository.findAllById(productIds)) {
+      products.put(product.getId(), product);
+    }
+    return products;
+  }
+}
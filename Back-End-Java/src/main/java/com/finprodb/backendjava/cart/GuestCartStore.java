@@ -0,0 +1,206 @@
+package com.finprodb.backendjava.cart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+// Carts of visitors who have not logged in. They live only here, never in cart_items: at most
+// app.cart.guest-max-carts of them, each dropped after app.cart.guest-ttl-minutes without use
+// (or sooner when the limit pushes out the least recently used). A guest line's id is its
+// product id.
+// Every new cart pushes out the oldest once the store is full, so each client may only open
+// app.cart.guest-new-carts-per-minute of them (0 for no limit). That stops one client from
+// flushing everyone's carts, but not many clients at once: alert on evictionsLastMinute in
+// stats() for that.
+@Component
+public class GuestCartStore {
+  private static final long WINDOW_MILLIS = 60_000L;
+
+  private final int maxCarts;
+  private final int maxLines;
+  private final long ttlMillis;
+  private final int newCartsPerMinute;
+  private final LinkedHashMap<String, GuestCart> carts = new LinkedHashMap<>(64, 0.75f, true);
+  // Carts each client opened in the current minute.
+  private final Map<String, Integer> newCarts = new HashMap<>();
+
+  private long window;
+  private long evictions;
+  private long expirations;
+  private long rejections;
+  private long windowEvictions;
+  private long evictionsLastMinute;
+
+  public GuestCartStore(
+      @Value("${app.cart.guest-max-carts:10000}") int maxCarts,
+      @Value("${app.cart.guest-max-lines:50}") int maxLines,
+      @Value("${app.cart.guest-ttl-minutes:1440}") long ttlMinutes,
+      @Value("${app.cart.guest-new-carts-per-minute:10}") int newCartsPerMinute) {
+    this.maxCarts = maxCarts;
+    this.maxLines = maxLines;
+    this.ttlMillis = ttlMinutes * 60_000L;
+    this.newCartsPerMinute = newCartsPerMinute;
+  }
+
+  public synchronized List<CartLine> lines(String guestId) {
+    GuestCart cart = find(guestId);
+    return cart != null ? cart.lines() : List.of();
+  }
+
+  // Product id to quantity, in the order the products were added.
+  public synchronized Map<Long, Integer> quantities(String guestId) {
+    GuestCart cart = find(guestId);
+    return cart != null ? new LinkedHashMap<>(cart.quantities) : Map.of();
+  }
+
+  // `client` identifies the caller (its address) when the add has to open a new cart.
+  public synchronized CartLine add(String guestId, String client, Long productId, int quantity) {
+    GuestCart cart = find(guestId);
+    if (cart == null) {
+      if (!admit(client)) {
+        rejections++;
+        throw new ResponseStatusException(
+            HttpStatus.TOO_MANY_REQUESTS, "Too many new carts, try again later");
+      }
+      cart = new GuestCart();
+      carts.put(guestId, cart);
+      evictIfNeeded();
+    }
+    if (!cart.quantities.containsKey(productId) && cart.quantities.size() >= maxLines) {
+      throw new IllegalArgumentException("Cart is full");
+    }
+    int total = cart.quantities.merge(productId, quantity, Integer::sum);
+    return new CartLine(productId, productId, total);
+  }
+
+  public synchronized Optional<CartLine> setQuantity(String guestId, Long lineId, int quantity) {
+    GuestCart cart = find(guestId);
+    if (cart == null || !cart.quantities.containsKey(lineId)) {
+      return Optional.empty();
+    }
+    cart.quantities.put(lineId, quantity);
+    return Optional.of(new CartLine(lineId, lineId, quantity));
+  }
+
+  public synchronized boolean remove(String guestId, Long lineId) {
+    GuestCart cart = find(guestId);
+    return cart != null && cart.quantities.remove(lineId) != null;
+  }
+
+  public synchronized void clear(String guestId) {
+    carts.remove(guestId);
+  }
+
+  // Removes the cart and hands back what it held, so only one caller ever gets its contents.
+  public synchronized Map<Long, Integer> take(String guestId) {
+    GuestCart cart = find(guestId);
+    if (cart == null) {
+      return Map.of();
+    }
+    carts.remove(guestId);
+    return cart.quantities;
+  }
+
+  // Puts taken lines back after their merge failed, adding to anything added since. No new-cart
+  // limit applies: the cart existed before it was taken.
+  public synchronized void restore(String guestId, Map<Long, Integer> quantities) {
+    if (quantities.isEmpty()) {
+      return;
+    }
+    GuestCart cart = find(guestId);
+    if (cart == null) {
+      cart = new GuestCart();
+      carts.put(guestId, cart);
+      evictIfNeeded();
+    }
+    for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+      cart.quantities.merge(line.getKey(), line.getValue(), Integer::sum);
+    }
+  }
+
+  public synchronized Map<String, Object> stats() {
+    roll();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("carts", carts.size());
+    stats.put("maxCarts", maxCarts);
+    stats.put("newCartsPerMinute", newCartsPerMinute);
+    stats.put("evictions", evictions);
+    stats.put("evictionsLastMinute", evictionsLastMinute);
+    stats.put("expirations", expirations);
+    stats.put("rejections", rejections);
+    return stats;
+  }
+
+  private boolean admit(String client) {
+    roll();
+    if (newCartsPerMinute <= 0) {
+      return true;
+    }
+    int opened = newCarts.getOrDefault(client, 0);
+    if (opened >= newCartsPerMinute) {
+      return false;
+    }
+    newCarts.put(client, opened + 1);
+    return true;
+  }
+
+  // Starts a new minute: client counts reset, and the evictions of the one that just ended (none,
+  // if it was not the previous minute) become evictionsLastMinute.
+  private void roll() {
+    long current = System.currentTimeMillis() / WINDOW_MILLIS;
+    if (current != window) {
+      evictionsLastMinute = current == window + 1 ? windowEvictions : 0;
+      windowEvictions = 0;
+      newCarts.clear();
+      window = current;
+    }
+  }
+
+  private GuestCart find(String guestId) {
+    expire();
+    GuestCart cart = carts.get(guestId);
+    if (cart != null) {
+      cart.lastAccess = System.currentTimeMillis();
+    }
+    return cart;
+  }
+
+  // Access order puts the longest-unused carts first, so expired ones are always a prefix.
+  private void expire() {
+    long cutoff = System.currentTimeMillis() - ttlMillis;
+    Iterator<GuestCart> it = carts.values().iterator();
+    while (it.hasNext() && it.next().lastAccess < cutoff) {
+      it.remove();
+      expirations++;
+    }
+  }
+
+  private void evictIfNeeded() {
+    Iterator<GuestCart> it = carts.values().iterator();
+    while (carts.size() > maxCarts && it.hasNext()) {
+      it.next();
+      it.remove();
+      evictions++;
+      windowEvictions++;
+    }
+  }
+
+  private static final class GuestCart {
+    private final Map<Long, Integer> quantities = new LinkedHashMap<>();
+    private long lastAccess = System.currentTimeMillis();
+
+    private List<CartLine> lines() {
+      List<CartLine> lines = new ArrayList<>(quantities.size());
+      quantities.forEach((id, quantity) -> lines.add(new CartLine(id, id, quantity)));
+      return lines;
+    }
+  }
+}
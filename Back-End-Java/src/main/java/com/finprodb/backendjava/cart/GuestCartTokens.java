@@ -0,0 +1,89 @@
+package com.finprodb.backendjava.cart;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+// Guest cart ids travel in a cookie as "<id>.<signature>", so a client can keep its cart across
+// requests but cannot guess or forge anyone else's.
+@Component
+public class GuestCartTokens {
+  public static final String COOKIE = "guest_cart";
+
+  private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+  private final SecretKeySpec key;
+  private final Duration ttl;
+  private final SecureRandom random = new SecureRandom();
+
+  public GuestCartTokens(
+      @Value("${app.jwt.secret}") String secret,
+      @Value("${app.cart.guest-ttl-minutes:1440}") long ttlMinutes) {
+    // Derived from the JWT secret, but never valid as a JWT signature or the other way round.
+    this.key =
+        new SecretKeySpec(
+            ("guest-cart:" + secret).getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    this.ttl = Duration.ofMinutes(ttlMinutes);
+  }
+
+  public String issue() {
+    byte[] id = new byte[16];
+    random.nextBytes(id);
+    String guestId = BASE64.encodeToString(id);
+    return guestId + "." + sign(guestId);
+  }
+
+  // The guest id, when the token is one this server signed.
+  public Optional<String> verify(String token) {
+    if (token == null) {
+      return Optional.empty();
+    }
+    int dot = token.indexOf('.');
+    if (dot <= 0) {
+      return Optional.empty();
+    }
+    String guestId = token.substring(0, dot);
+    byte[] expected = sign(guestId).getBytes(StandardCharsets.US_ASCII);
+    byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+    return MessageDigest.isEqual(expected, actual) ? Optional.of(guestId) : Optional.empty();
+  }
+
+  public ResponseCookie cookie(String token, boolean secure) {
+    return ResponseCookie.from(COOKIE, token)
+        .httpOnly(true)
+        .secure(secure)
+        .sameSite("Lax")
+        .path("/api")
+        .maxAge(ttl)
+        .build();
+  }
+
+  public ResponseCookie expiredCookie(boolean secure) {
+    return ResponseCookie.from(COOKIE, "")
+        .httpOnly(true)
+        .secure(secure)
+        .sameSite("Lax")
+        .path("/api")
+        .maxAge(0)
+        .build();
+  }
+
+  private String sign(String guestId) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key);
+      return BASE64.encodeToString(mac.doFinal(guestId.getBytes(StandardCharsets.US_ASCII)));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 is not available", e);
+    }
+  }
+}
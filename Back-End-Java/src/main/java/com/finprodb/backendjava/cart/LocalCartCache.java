@@ -0,0 +1,59 @@
+package com.finprodb.backendjava.cart;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// In-process stand-in for a shared cache. It is only correct while a user's requests all reach
+// the same node; deployments with several nodes and no shared cache run app.cart.store=database.
+@Component
+public class LocalCartCache implements CartCache {
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+  private final long idleMillis;
+
+  public LocalCartCache(@Value("${app.cart.idle-minutes:30}") long idleMinutes) {
+    this.idleMillis = idleMinutes * 60_000L;
+  }
+
+  @Override
+  public CartState get(Long userId) {
+    Entry entry = entries.get(userId);
+    if (entry == null) {
+      return null;
+    }
+    entry.lastAccess = System.currentTimeMillis();
+    return entry.state;
+  }
+
+  @Override
+  public void put(Long userId, CartState state) {
+    entries.put(userId, new Entry(state));
+  }
+
+  @Override
+  public void remove(Long userId) {
+    entries.remove(userId);
+  }
+
+  @Override
+  public void evictIdle() {
+    long cutoff = System.currentTimeMillis() - idleMillis;
+    for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+      Entry entry = e.getValue();
+      // Removing by entry loses to a concurrent put, which may carry unflushed changes.
+      if (!entry.state.isDirty() && entry.lastAccess < cutoff) {
+        entries.remove(e.getKey(), entry);
+      }
+    }
+  }
+
+  private static final class Entry {
+    private final CartState state;
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    private Entry(CartState state) {
+      this.state = state;
+    }
+  }
+}
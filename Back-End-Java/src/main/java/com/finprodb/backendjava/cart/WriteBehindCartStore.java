@@ -0,0 +1,238 @@
+package com.finprodb.backendjava.cart;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Keeps each user's cart in the CartCache and writes quantity changes and removals to cart_items
+// in the background. New lines are inserted right away, since their id is the line's identity.
+// The table is the recovery log: a cart missing from the cache (after a restart, or eviction)
+// is loaded from it, so a crash loses at most the last flush interval of edits. The cache is
+// local to this process, so the store is only safe with a single application node.
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore {
+  private static final int STRIPES = 64;
+
+  private final CartTable cartTable;
+  private final CartCache cache;
+  private final Object[] stripes = new Object[STRIPES];
+  private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+  // User id to the products whose removed lines the running flush is deleting. The snapshot it
+  // writes has already left the cache, so re-adds consult this until cartTable.write returns.
+  private final Map<Long, Set<Long>> deleting = new ConcurrentHashMap<>();
+  private final Object flushLock = new Object();
+
+  public WriteBehindCartStore(CartTable cartTable, CartCache cache) {
+    this.cartTable = cartTable;
+    this.cache = cache;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  @Override
+  public List<CartLine> lines(Long userId) {
+    CartState state = cache.get(userId);
+    if (state != null) {
+      return state.getLines();
+    }
+    synchronized (stripe(userId)) {
+      return state(userId).getLines();
+    }
+  }
+
+  @Override
+  public CartLine add(Long userId, Long productId, int quantity) {
+    for (CartLine line : apply(userId, batch -> batch.add(productId, quantity))) {
+      if (line.getProductId().equals(productId)) {
+        return line;
+      }
+    }
+    throw new IllegalStateException("Added line is missing from the cart");
+  }
+
+  @Override
+  public Optional<CartLine> setQuantity(Long userId, Long lineId, int quantity) {
+    synchronized (stripe(userId)) {
+      CartState state = state(userId);
+      CartLine line = state.byId(lineId);
+      if (line == null) {
+        return Optional.empty();
+      }
+      CartLine updated = line.withQuantity(quantity);
+      update(userId, state.with(updated, false));
+      return Optional.of(updated);
+    }
+  }
+
+  @Override
+  public boolean remove(Long userId, Long lineId) {
+    synchronized (stripe(userId)) {
+      CartState state = state(userId);
+      CartLine line = state.byId(lineId);
+      if (line == null) {
+        return false;
+      }
+      update(userId, state.without(line));
+      return true;
+    }
+  }
+
+  @Override
+  public List<CartLine> apply(Long userId, Consumer<CartBatch> edits) {
+    synchronized (stripe(userId)) {
+      CartState previous = state(userId);
+      CartBatch batch = new CartBatch(previous, deleting.getOrDefault(userId, Set.of()));
+      edits.accept(batch);
+      CartState next = batch.state();
+      if (!batch.inserts().isEmpty()) {
+        // Lines this node has not seen (another node's) are added to rather than duplicated; a
+        // line whose delete is still being flushed is set to the new quantity.
+        for (CartLine line :
+            cartTable.upsertAll(userId, batch.inserts(), batch.replacing())) {
+          next = next.with(line, true);
+        }
+        restoreOnRollback(userId, previous, next);
+      }
+      update(userId, next);
+      return next.getLines();
+    }
+  }
+
+  // Products already in the cart are added to in memory; the rest go in one batched upsert.
+  @Override
+  public void merge(Long userId, Map<Long, Integer> quantities) {
+    apply(userId, batch -> quantities.forEach(batch::add));
+  }
+
+  @Override
+  public void clear(Long userId) {
+    synchronized (stripe(userId)) {
+      CartState previous = cache.get(userId);
+      cartTable.deleteAll(userId);
+      cache.put(userId, CartState.empty());
+      restoreOnRollback(userId, previous, CartState.empty());
+    }
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.cart.flush-interval-ms:1000}",
+      initialDelayString = "${app.cart.flush-interval-ms:1000}")
+  public void flush() {
+    synchronized (flushLock) {
+      write(new ArrayList<>(dirtyUsers));
+      cache.evictIdle();
+    }
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flush();
+  }
+
+  private void write(List<Long> userIds) {
+    // Taken before the snapshots: a removed line upserted again after this is not deleted.
+    Instant removedBefore = Instant.now();
+    Map<Long, CartState> batch = new HashMap<>();
+    for (Long userId : userIds) {
+      synchronized (stripe(userId)) {
+        dirtyUsers.remove(userId);
+        CartState state = cache.get(userId);
+        if (state != null && state.isDirty()) {
+          batch.put(userId, state);
+          cache.put(userId, state.flushed());
+          Set<Long> products = new HashSet<>();
+          for (CartLine line : state.removedLines()) {
+            products.add(line.getProductId());
+          }
+          if (!products.isEmpty()) {
+            deleting.put(userId, products);
+          }
+        }
+      }
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      cartTable.write(batch, removedBefore);
+    } catch (RuntimeException e) {
+      batch.forEach(
+          (userId, failed) -> {
+            synchronized (stripe(userId)) {
+              deleting.remove(userId);
+              CartState current = cache.get(userId);
+              update(userId, (current != null ? current : failed.flushed()).unflushed(failed));
+            }
+          });
+      throw e;
+    }
+    for (Long userId : batch.keySet()) {
+      synchronized (stripe(userId)) {
+        deleting.remove(userId);
+      }
+    }
+  }
+
+  // Callers hold the user's stripe.
+  private CartState state(Long userId) {
+    CartState state = cache.get(userId);
+    if (state == null) {
+      state = CartState.of(cartTable.load(userId));
+      cache.put(userId, state);
+    }
+    return state;
+  }
+
+  // Writes made in a caller's transaction are undone if it rolls back, and the cached state
+  // would then refer to rows that are gone (or miss rows that are back). The state from before
+  // them is put back, edits not yet flushed included, unless the cart's lines changed since;
+  // then it is reloaded from the table instead.
+  private void restoreOnRollback(Long userId, CartState previous, CartState left) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              if (status != STATUS_COMMITTED) {
+                synchronized (stripe(userId)) {
+                  CartState current = cache.get(userId);
+                  if (previous != null
+                      && current != null
+                      && current.getLines().equals(left.getLines())) {
+                    update(userId, previous);
+                  } else {
+                    cache.remove(userId);
+                  }
+                }
+              }
+            }
+          });
+    }
+  }
+
+  private void update(Long userId, CartState state) {
+    cache.put(userId, state);
+    if (state.isDirty()) {
+      dirtyUsers.add(userId);
+    }
+  }
+
+  private Object stripe(Long userId) {
+    return stripes[Math.floorMod(userId.hashCode(), STRIPES)];
+  }
+}
@@ -0,0 +1,78 @@
+package com.finprodb.backendjava.cart.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+public class CartBatchRequest {
+  public static final int MAX_OPERATIONS = 200;
+
+  @NotEmpty
+  @Size(max = MAX_OPERATIONS)
+  @Valid
+  private List<Operation> operations;
+
+  public List<Operation> getOperations() {
+    return operations;
+  }
+
+  public void setOperations(List<Operation> operations) {
+    this.operations = operations;
+  }
+
+  public enum Type {
+    ADD,
+    UPDATE,
+    REMOVE
+  }
+
+  public static class Operation {
+    @NotNull
+    private Type type;
+
+    // ADD only.
+    private Long productId;
+
+    // UPDATE and REMOVE.
+    private Long cartItemId;
+
+    // ADD and UPDATE.
+    @Min(1)
+    private Integer quantity;
+
+    public Type getType() {
+      return type;
+    }
+
+    public void setType(Type type) {
+      this.type = type;
+    }
+
+    public Long getProductId() {
+      return productId;
+    }
+
+    public void setProductId(Long productId) {
+      this.productId = productId;
+    }
+
+    public Long getCartItemId() {
+      return cartItemId;
+    }
+
+    public void setCartItemId(Long cartItemId) {
+      this.cartItemId = cartItemId;
+    }
+
+    public Integer getQuantity() {
+      return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+      this.quantity = quantity;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.finprodb.backendjava.category;
 
+import com.finprodb.backendjava.category.dto.CategoryMoveRequest;
 import com.finprodb.backendjava.category.dto.CategoryRequest;
 import jakarta.validation.Valid;
 import java.util.Map;
@@ -53,6 +54,12 @@ public class AdminCategoryController {
     return ResponseEntity.ok(categoryService.update(id, req));
   }
 
+  @PutMapping("/{id}/parent")
+  public ResponseEntity<Category> move(
+      @PathVariable Long id, @RequestBody CategoryMoveRequest req) {
+    return ResponseEntity.ok(categoryService.move(id, req.getParentId()));
+  }
+
   @PostMapping(path = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   public ResponseEntity<Category> uploadImage(
       @PathVariable Long id, @RequestPart("file") MultipartFile file) {
@@ -8,6 +8,8 @@ import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
@@ -23,9 +25,56 @@ public class Category {
   @Column(columnDefinition = "TEXT")
   private String description;
 
+  @Column(name = "parent_id")
+  private Long parentId;
+
+  // Materialized path of ids from the root down to this category, e.g. "/3/17/42/", so a
+  // subtree is one prefix range on idx_categories_path.
+  @Column(nullable = false)
+  private String path;
+
+  @Column(nullable = false)
+  private Integer depth;
+
   @Column
   private String imagePath;
 
+  @Column
+  private String imageThumbPath;
+
+  @Column
+  private String imageCardPath;
+
+  @Column
+  private String imageFullPath;
+
+  // Live products filed directly under this category, and their price range. Written only by
+  // CategoryProductStats, never by saving the entity, so a stale copy cannot overwrite them.
+  @Column(
+      name = "product_count",
+      nullable = false,
+      insertable = false,
+      updatable = false,
+      columnDefinition = "integer default 0")
+  private Integer directProductCount;
+
+  @Column(name = "min_price", precision = 19, scale = 2, insertable = false, updatable = false)
+  private BigDecimal directMinPrice;
+
+  @Column(name = "max_price", precision = 19, scale = 2, insertable = false, updatable = false)
+  private BigDecimal directMaxPrice;
+
+  // The same over the whole subtree, i.e. what GET /api/products?categoryId= lists. Summed up by
+  // CategoryTree from the direct stats and filled in by CategoryService when serving a category.
+  @Transient
+  private Integer productCount;
+
+  @Transient
+  private BigDecimal minPrice;
+
+  @Transient
+  private BigDecimal maxPrice;
+
   @Column(name = "created_at", nullable = false)
   private Instant createdAt;
 
@@ -43,6 +92,15 @@ public class Category {
     if (this.isDeleted == null) {
       this.isDeleted = false;
     }
+    // The id is not known before the insert; CategoryService sets the real path right after.
+    if (this.path == null) {
+      this.path = "/";
+    }
+    if (this.depth == null) {
+      this.depth = 0;
+    }
+    // Matches the column default the insert leaves it to.
+    this.directProductCount = 0;
   }
 
   @PreUpdate
@@ -74,6 +132,30 @@ public class Category {
     this.description = description;
   }
 
+  public Long getParentId() {
+    return parentId;
+  }
+
+  public void setParentId(Long parentId) {
+    this.parentId = parentId;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public Integer getDepth() {
+    return depth;
+  }
+
+  public void setDepth(Integer depth) {
+    this.depth = depth;
+  }
+
   public String getImagePath() {
     return imagePath;
   }
@@ -82,6 +164,30 @@ public class Category {
     this.imagePath = imagePath;
   }
 
+  public String getImageThumbPath() {
+    return imageThumbPath;
+  }
+
+  public void setImageThumbPath(String imageThumbPath) {
+    this.imageThumbPath = imageThumbPath;
+  }
+
+  public String getImageCardPath() {
+    return imageCardPath;
+  }
+
+  public void setImageCardPath(String imageCardPath) {
+    this.imageCardPath = imageCardPath;
+  }
+
+  public String getImageFullPath() {
+    return imageFullPath;
+  }
+
+  public void setImageFullPath(String imageFullPath) {
+    this.imageFullPath = imageFullPath;
+  }
+
   public Instant getCreatedAt() {
     return createdAt;
   }
@@ -97,4 +203,35 @@ public class Category {
   public void setIsDeleted(Boolean isDeleted) {
     this.isDeleted = isDeleted;
   }
+
+  public Integer getDirectProductCount() {
+    return directProductCount;
+  }
+
+  public BigDecimal getDirectMinPrice() {
+    return directMinPrice;
+  }
+
+  public BigDecimal getDirectMaxPrice() {
+    return directMaxPrice;
+  }
+
+  public Integer getProductCount() {
+    return productCount;
+  }
+
+  public BigDecimal getMinPrice() {
+    return minPrice;
+  }
+
+  public BigDecimal getMaxPrice() {
+    return maxPrice;
+  }
+
+  public void setSubtreeProductStats(
+      Integer productCount, BigDecimal minPrice, BigDecimal maxPrice) {
+    this.productCount = productCount;
+    this.minPrice = minPrice;
+    this.maxPrice = maxPrice;
+  }
 }
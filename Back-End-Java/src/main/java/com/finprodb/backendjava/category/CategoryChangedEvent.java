@@ -0,0 +1,25 @@
+package com.finprodb.backendjava.category;
+
+public class CategoryChangedEvent {
+  private final Category category;
+  private final boolean treeChanged;
+
+  public CategoryChangedEvent(Category category) {
+    this(category, false);
+  }
+
+  // treeChanged marks a change in which categories sit under which, e.g. a new, moved or deleted
+  // category; product listings filtered by a subtree depend on it.
+  public CategoryChangedEvent(Category category, boolean treeChanged) {
+    this.category = category;
+    this.treeChanged = treeChanged;
+  }
+
+  public Category getCategory() {
+    return category;
+  }
+
+  public boolean isTreeChanged() {
+    return treeChanged;
+  }
+}
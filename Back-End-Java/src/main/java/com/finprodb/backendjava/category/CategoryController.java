@@ -1,5 +1,9 @@
 package com.finprodb.backendjava.category;
 
+import com.finprodb.backendjava.category.dto.CategoryResponse;
+import com.finprodb.backendjava.category.dto.CategoryTreeNode;
+import com.finprodb.backendjava.common.CatalogVersions;
+import java.util.List;
 import java.util.Map;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
@@ -8,27 +12,44 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/categories")
 public class CategoryController {
   private final CategoryService categoryService;
+  private final CatalogVersions catalogVersions;
 
-  public CategoryController(CategoryService categoryService) {
+  public CategoryController(CategoryService categoryService, CatalogVersions catalogVersions) {
     this.categoryService = categoryService;
+    this.catalogVersions = catalogVersions;
   }
 
   @GetMapping
-  public ResponseEntity<Page<Category>> list(
-      @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) {
-    return ResponseEntity.ok(categoryService.listActive(page, size));
+  public ResponseEntity<Page<CategoryResponse>> list(
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "10") int size,
+      WebRequest request) {
+    return catalogVersions.ifCategoriesModified(
+        request, ok -> ok.body(categoryService.listActive(page, size)));
+  }
+
+  @GetMapping("/tree")
+  public ResponseEntity<List<CategoryTreeNode>> tree(WebRequest request) {
+    return catalogVersions.ifCategoriesModified(request, ok -> ok.body(categoryService.tree()));
   }
 
   @GetMapping("/{id}")
-  public ResponseEntity<?> getById(@PathVariable Long id) {
-    return categoryService
-        .findById(id)
-        .<ResponseEntity<?>>map(ResponseEntity::ok)
-        .orElseGet(() -> ResponseEntity.status(404).body(Map.of("message", "Category not found")));
+  public ResponseEntity<?> getById(@PathVariable Long id, WebRequest request) {
+    return catalogVersions.ifCategoriesModified(
+        request,
+        ok ->
+            categoryService
+                .findById(id)
+                .map(category -> ok.<Object>body(category))
+                .orElseGet(
+                    () ->
+                        ResponseEntity.status(404)
+                            .body(Map.of("message", "Category not found"))));
   }
 }
@@ -0,0 +1,46 @@
+package com.finprodb.backendjava.category;
+
+import com.finprodb.backendjava.category.dto.CategoryResponse;
+import com.finprodb.backendjava.common.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class CategoryListingCache extends BoundedCache<String, Page<CategoryResponse>> {
+  public CategoryListingCache(@Value("${app.cache.categories.max-bytes:4194304}") long maxBytes) {
+    super("categories", maxBytes, CategoryListingCache::estimateBytes);
+  }
+
+  public static String key(int page, int size) {
+    return page + "|" + size;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCategoryChanged(CategoryChangedEvent event) {
+    invalidateAll();
+  }
+
+  private static long estimateBytes(Page<CategoryResponse> page) {
+    long bytes = 128;
+    for (CategoryResponse c : page.getContent()) {
+      bytes +=
+          // Fixed fields, counting the four BigDecimal price bounds at about 40 bytes each.
+          320
+              + 2L
+                  * (length(c.getName())
+                      + length(c.getPath())
+                      + length(c.getDescription())
+                      + length(c.getImagePath())
+                      + length(c.getImageThumbPath())
+                      + length(c.getImageCardPath())
+                      + length(c.getImageFullPath()));
+    }
+    return bytes;
+  }
+
+  private static int length(String s) {
+    return s != null ? s.length() : 0;
+  }
+}
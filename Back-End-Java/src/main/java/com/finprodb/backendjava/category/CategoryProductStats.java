@@ -0,0 +1,113 @@
+package com.finprodb.backendjava.category;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Maintains categories.product_count, min_price and max_price for the products filed directly
+// under each category; CategoryTree sums them up over subtrees. Product writes hand refresh() the
+// categories they touched, and the recount runs after their commit in a transaction of its own:
+// counting products inside the write would wait on rows that concurrent writers to the same
+// category hold, while they wait on the category row. The reconciler repairs rows that drifted
+// through writes that went around it, e.g. SQL run by hand or a refresh lost to a crash.
+@Service
+public class CategoryProductStats {
+  private final CategoryRepository categoryRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public CategoryProductStats(
+      CategoryRepository categoryRepository,
+      PlatformTransactionManager transactionManager,
+      ApplicationEventPublisher eventPublisher) {
+    this.categoryRepository = categoryRepository;
+    // Also run from afterCommit, where the finished transaction is still bound to the thread.
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(
+        TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.eventPublisher = eventPublisher;
+  }
+
+  // Inside a transaction the recount waits for its commit and is skipped on rollback.
+  public void refresh(Collection<Long> categoryIds) {
+    Set<Long> ids = new TreeSet<>();
+    categoryIds.stream().filter(Objects::nonNull).forEach(ids::add);
+    if (ids.isEmpty()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      recount(ids);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            try {
+              recount(ids);
+            } catch (DataAccessException e) {
+              // The product change itself is committed; the reconciler catches up.
+            }
+          }
+        });
+  }
+
+  private void recount(Set<Long> ids) {
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          // Locking the categories first serializes concurrent recounts of one category, and the
+          // product read after it sees every write committed before the lock was granted, so the
+          // recount that finishes last also writes the newest numbers.
+          categoryRepository.lockForProductStats(ids);
+          Map<Long, Object[]> live = new HashMap<>();
+          for (Object[] row : categoryRepository.findLiveProductStats(ids)) {
+            live.put(((Number) row[0]).longValue(), row);
+          }
+          // Only categories whose numbers moved are announced, so caches keep the others.
+          List<Long> changed = new ArrayList<>();
+          for (Long id : ids) {
+            Object[] row = live.get(id);
+            int updated =
+                categoryRepository.updateProductStats(
+                    id,
+                    row != null ? ((Number) row[1]).intValue() : 0,
+                    row != null ? (BigDecimal) row[2] : null,
+                    row != null ? (BigDecimal) row[3] : null);
+            if (updated > 0) {
+              changed.add(id);
+            }
+          }
+          if (changed.isEmpty()) {
+            return;
+          }
+          for (Category category : categoryRepository.findAllById(changed)) {
+            eventPublisher.publishEvent(new CategoryChangedEvent(category));
+          }
+        });
+  }
+
+  // Returns the number of categories that had drifted.
+  @Scheduled(
+      fixedDelayString = "${app.categories.stats-reconcile-interval-ms:3600000}",
+      initialDelayString = "${app.categories.stats-reconcile-interval-ms:3600000}")
+  public int reconcile() {
+    List<Long> stale = categoryRepository.findIdsWithStaleProductStats();
+    refresh(stale);
+    return stale.size();
+  }
+}
@@ -1,12 +1,125 @@
 package com.finprodb.backendjava.category;
 
+import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
   Page<Category> findByIsDeletedFalse(Pageable pageable);
 
+  List<Category> findByIsDeletedFalse();
+
   Optional<Category> findByIdAndIsDeletedFalse(Long id);
+
+  boolean existsByParentIdAndIsDeletedFalse(Long parentId);
+
+  // Row lock on a parent, so a child is never filed under a path a running move is about to
+  // rewrite; the locking read also returns the path as last committed. FOR UPDATE rather than a
+  // shared lock, which MariaDB does not accept in the syntax the MySQL dialect writes.
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select c from Category c where c.id = :id and c.isDeleted = false")
+  Optional<Category> findForChildById(@Param("id") Long id);
+
+  // Locks every category row, in id order. A move takes this before it reads anything, so moves
+  // run one at a time and each checks for cycles against the tree the previous one left.
+  @Query(nativeQuery = true, value = "select id from categories order by id for update")
+  List<Long> lockTree();
+
+  @Query("select max(c.depth) from Category c where c.path like concat(:path, '%')")
+  Integer findMaxDepthUnder(@Param("path") String path);
+
+  // Re-roots a whole subtree in one statement: every path under oldPath (the moved category's
+  // own included) swaps that prefix for newPath and shifts its depth by the same amount.
+  @Modifying
+  @Query(
+      "update Category c set c.path = concat(:newPath, substring(c.path, length(:oldPath) + 1)),"
+          + " c.depth = c.depth + :depthDelta, c.updatedAt = :now"
+          + " where c.path like concat(:oldPath, '%')")
+  int moveSubtree(
+      @Param("oldPath") String oldPath,
+      @Param("newPath") String newPath,
+      @Param("depthDelta") int depthDelta,
+      @Param("now") Instant now);
+
+  // Only applies while the category still shows the image the variants were made from.
+  @Transactional
+  @Modifying
+  @Query(
+      "update Category c set c.imageThumbPath = :thumb, c.imageCardPath = :card,"
+          + " c.imageFullPath = :full where c.id = :id and c.imagePath = :imagePath")
+  int updateImageVariants(
+      @Param("id") Long id,
+      @Param("imagePath") String imagePath,
+      @Param("thumb") String thumb,
+      @Param("card") String card,
+      @Param("full") String full);
+
+  // Compare-and-set on image_path, so two uploads racing for one category cannot both believe
+  // they replaced the same previous image. Variants are cleared until the new ones are rendered.
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "update Category c set c.imagePath = :imagePath, c.imageThumbPath = null,"
+          + " c.imageCardPath = null, c.imageFullPath = null, c.updatedAt = :now"
+          + " where c.id = :id and c.isDeleted = false and (c.imagePath = :previous"
+          + " or (c.imagePath is null and :previous is null))")
+  int replaceImage(
+      @Param("id") Long id,
+      @Param("previous") String previous,
+      @Param("imagePath") String imagePath,
+      @Param("now") Instant now);
+
+  // Row locks that serialize stats refreshes of the same categories, taken in id order.
+  @Query(
+      nativeQuery = true,
+      value = "select id from categories where id in (:ids) order by id for update")
+  List<Long> lockForProductStats(@Param("ids") Collection<Long> ids);
+
+  // Count, min and max price of the live products filed directly under each category, read off
+  // idx_products_live_category_price. A plain read: it waits on no product writer's locks.
+  @Query(
+      nativeQuery = true,
+      value =
+          "select category_id, count(*), min(price), max(price) from products"
+              + " where active = true and deleted_at is null and category_id in (:ids)"
+              + " group by category_id")
+  List<Object[]> findLiveProductStats(@Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Query(
+      nativeQuery = true,
+      value =
+          "update categories set product_count = :count, min_price = :minPrice,"
+              + " max_price = :maxPrice where id = :id and (product_count <> :count"
+              + " or coalesce(min_price, -1) <> coalesce(:minPrice, -1)"
+              + " or coalesce(max_price, -1) <> coalesce(:maxPrice, -1))")
+  // 0 when the row already holds these numbers.
+  int updateProductStats(
+      @Param("id") Long id,
+      @Param("count") int count,
+      @Param("minPrice") BigDecimal minPrice,
+      @Param("maxPrice") BigDecimal maxPrice);
+
+  @Query(
+      nativeQuery = true,
+      value =
+          "select c.id from categories c left join ("
+              + "select category_id, count(*) as n, min(price) as lo, max(price) as hi"
+              + " from products where active = true and deleted_at is null"
+              + " group by category_id) s on s.category_id = c.id"
+              + " where c.product_count <> coalesce(s.n, 0)"
+              + " or coalesce(c.min_price, -1) <> coalesce(s.lo, -1)"
+              + " or coalesce(c.max_price, -1) <> coalesce(s.hi, -1)")
+  List<Long> findIdsWithStaleProductStats();
 }
@@ -1,30 +1,61 @@
 package com.finprodb.backendjava.category;
 
 import com.finprodb.backendjava.category.dto.CategoryRequest;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import com.finprodb.backendjava.category.dto.CategoryResponse;
+import com.finprodb.backendjava.category.dto.CategoryTreeNode;
+import com.finprodb.backendjava.upload.BlobStore;
+import com.finprodb.backendjava.upload.ImageVariant;
+import com.finprodb.backendjava.upload.ImageVariantPipeline;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class CategoryService {
-  private final CategoryRepository categoryRepository;
+  // Deepest level below the roots (depth 0); also keeps paths well inside the column.
+  private static final int MAX_DEPTH = 7;
 
-  public CategoryService(CategoryRepository categoryRepository) {
+  private final CategoryRepository categoryRepository;
+  private final CategoryListingCache listingCache;
+  private final CategoryTree categoryTree;
+  private final BlobStore blobStore;
+  private final ImageVariantPipeline imageVariants;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public CategoryService(
+      CategoryRepository categoryRepository,
+      CategoryListingCache listingCache,
+      CategoryTree categoryTree,
+      BlobStore blobStore,
+      ImageVariantPipeline imageVariants,
+      ApplicationEventPublisher eventPublisher) {
     this.categoryRepository = categoryRepository;
+    this.listingCache = listingCache;
+    this.categoryTree = categoryTree;
+    this.blobStore = blobStore;
+    this.imageVariants = imageVariants;
+    this.eventPublisher = eventPublisher;
   }
 
-  public Page<Category> listActive(int page, int size) {
+  public Page<CategoryResponse> listActive(int page, int size) {
     Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100));
-    return categoryRepository.findByIsDeletedFalse(pageable);
+    return listingCache.getOrLoad(
+        CategoryListingCache.key(pageable.getPageNumber(), pageable.getPageSize()),
+        () ->
+            categoryRepository
+                .findByIsDeletedFalse(pageable)
+                .map(categoryTree::withSubtreeProductStats)
+                .map(CategoryResponse::from));
   }
 
   public Page<Category> listAll(int page, int size) {
@@ -33,18 +64,43 @@ public class CategoryService {
             Math.max(page, 0),
             Math.min(Math.max(size, 1), 100),
             Sort.by(Sort.Direction.DESC, "createdAt"));
-    return categoryRepository.findByIsDeletedFalse(pageable);
+    return categoryRepository
+        .findByIsDeletedFalse(pageable)
+        .map(categoryTree::withSubtreeProductStats);
+  }
+
+  public List<CategoryTreeNode> tree() {
+    return categoryTree.roots();
   }
 
   public Optional<Category> findById(Long id) {
-    return categoryRepository.findByIdAndIsDeletedFalse(id);
+    return categoryRepository
+        .findByIdAndIsDeletedFalse(id)
+        .map(categoryTree::withSubtreeProductStats);
   }
 
+  @Transactional
   public Category create(CategoryRequest req) {
+    Category parent =
+        req.getParentId() != null
+            ? categoryRepository
+                .findForChildById(req.getParentId())
+                .orElseThrow(() -> new IllegalArgumentException("Parent category not found"))
+            : null;
+    int depth = parent != null ? parent.getDepth() + 1 : 0;
+    if (depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Category tree is too deep");
+    }
     Category category = new Category();
     category.setName(req.getName());
     category.setDescription(req.getDescription());
-    return categoryRepository.save(category);
+    category.setParentId(parent != null ? parent.getId() : null);
+    category.setDepth(depth);
+    Category saved = categoryRepository.save(category);
+    // The path ends in the category's own id, which only exists after the insert.
+    saved.setPath(pathOf(parent) + saved.getId() + "/");
+    return categoryTree.withSubtreeProductStats(
+        publishChanged(categoryRepository.save(saved), true));
   }
 
   public Category update(Long id, CategoryRequest req) {
@@ -54,16 +110,57 @@ public class CategoryService {
             .orElseThrow(() -> new IllegalArgumentException("Category not found"));
     category.setName(req.getName());
     category.setDescription(req.getDescription());
-    return categoryRepository.save(category);
+    return categoryTree.withSubtreeProductStats(
+        publishChanged(categoryRepository.save(category)));
+  }
+
+  // Moves the category, with everything under it, below another parent (or to the top level).
+  @Transactional
+  public Category move(Long id, Long parentId) {
+    // First statement of the transaction, so every read below comes after the lock.
+    categoryRepository.lockTree();
+    Category category =
+        categoryRepository
+            .findByIdAndIsDeletedFalse(id)
+            .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+    if (Objects.equals(category.getParentId(), parentId)) {
+      return categoryTree.withSubtreeProductStats(category);
+    }
+    Category parent = parentOf(parentId);
+    String oldPath = category.getPath();
+    if (parent != null && parent.getPath().startsWith(oldPath)) {
+      throw new IllegalArgumentException("Category cannot be moved under itself");
+    }
+    int depthDelta = (parent != null ? parent.getDepth() + 1 : 0) - category.getDepth();
+    Integer deepest = categoryRepository.findMaxDepthUnder(oldPath);
+    if (deepest != null && deepest + depthDelta > MAX_DEPTH) {
+      throw new IllegalArgumentException("Category tree is too deep");
+    }
+
+    String newPath = pathOf(parent) + category.getId() + "/";
+    Instant now = Instant.now();
+    categoryRepository.moveSubtree(oldPath, newPath, depthDelta, now);
+    // The bulk update bypassed the loaded entity; keep it in step so the flush agrees.
+    category.setParentId(parent != null ? parent.getId() : null);
+    category.setPath(newPath);
+    category.setDepth(category.getDepth() + depthDelta);
+    return categoryTree.withSubtreeProductStats(
+        publishChanged(categoryRepository.save(category), true));
   }
 
+  @Transactional
   public void delete(Long id) {
     Category category =
         categoryRepository
             .findByIdAndIsDeletedFalse(id)
             .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+    if (categoryRepository.existsByParentIdAndIsDeletedFalse(id)) {
+      throw new IllegalArgumentException("Category has subcategories");
+    }
     category.setIsDeleted(true);
-    categoryRepository.save(category);
+    publishChanged(categoryRepository.save(category), true);
+    // The row keeps its image_path, but nothing serves it any more.
+    blobStore.release(category.getImagePath());
   }
 
   public Category uploadImage(Long categoryId, MultipartFile file) {
@@ -81,27 +178,61 @@ public class CategoryService {
             .findByIdAndIsDeletedFalse(categoryId)
             .orElseThrow(() -> new IllegalArgumentException("Category not found"));
 
-    String original = file.getOriginalFilename();
-    String ext = "";
-    if (original != null) {
-      int dot = original.lastIndexOf('.');
-      if (dot >= 0 && dot < original.length() - 1) {
-        ext = original.substring(dot);
+    String imagePath = blobStore.store(file);
+    String previous = category.getImagePath();
+    try {
+      while (categoryRepository.replaceImage(categoryId, previous, imagePath, Instant.now()) == 0) {
+        // Another upload got in first; swap against the image it saved.
+        previous =
+            categoryRepository
+                .findByIdAndIsDeletedFalse(categoryId)
+                .orElseThrow(() -> new IllegalArgumentException("Category not found"))
+                .getImagePath();
       }
+    } catch (RuntimeException e) {
+      blobStore.release(imagePath);
+      throw e;
     }
+    blobStore.release(previous);
+    Category saved = publishChanged(categoryRepository.findById(categoryId).orElseThrow());
+    imageVariants.submit(
+        imagePath, variants -> applyImageVariants(categoryId, imagePath, variants));
+    return categoryTree.withSubtreeProductStats(saved);
+  }
 
-    Path dir = Paths.get("uploads", "categories");
-    String filename = "category-" + categoryId + "-" + Instant.now().toEpochMilli() + ext;
-    Path target = dir.resolve(filename);
+  private void applyImageVariants(
+      Long categoryId, String imagePath, Map<ImageVariant, String> variants) {
+    int updated =
+        categoryRepository.updateImageVariants(
+            categoryId,
+            imagePath,
+            variants.get(ImageVariant.THUMB),
+            variants.get(ImageVariant.CARD),
+            variants.get(ImageVariant.FULL));
+    if (updated > 0) {
+      categoryRepository.findById(categoryId).ifPresent(this::publishChanged);
+    }
+  }
 
-    try {
-      Files.createDirectories(dir);
-      file.transferTo(target);
-    } catch (IOException e) {
-      throw new IllegalStateException("Failed to store file", e);
+  private Category parentOf(Long parentId) {
+    if (parentId == null) {
+      return null;
     }
+    return categoryRepository
+        .findByIdAndIsDeletedFalse(parentId)
+        .orElseThrow(() -> new IllegalArgumentException("Parent category not found"));
+  }
+
+  private static String pathOf(Category parent) {
+    return parent != null ? parent.getPath() : "/";
+  }
+
+  private Category publishChanged(Category category) {
+    return publishChanged(category, false);
+  }
 
-    category.setImagePath("/uploads/categories/" + filename);
-    return categoryRepository.save(category);
+  private Category publishChanged(Category category, boolean treeChanged) {
+    eventPublisher.publishEvent(new CategoryChangedEvent(category, treeChanged));
+    return category;
   }
 }
@@ -0,0 +1,183 @@
+package com.finprodb.backendjava.category;
+
+import com.finprodb.backendjava.category.dto.CategoryTreeNode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Immutable snapshot of the live category tree, built on the first read after a category change
+// and shared by every reader until the next one. Categories are held sorted by path, so the
+// subtree of any category is the contiguous run of paths that start with its own.
+@Component
+public class CategoryTree {
+  private final CategoryRepository categoryRepository;
+  private final AtomicLong generation = new AtomicLong();
+  private volatile Snapshot snapshot;
+
+  public CategoryTree(CategoryRepository categoryRepository) {
+    this.categoryRepository = categoryRepository;
+  }
+
+  // Ahead of the listing caches, so a listing reloaded after they are cleared sees the new tree.
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCategoryChanged(CategoryChangedEvent event) {
+    generation.incrementAndGet();
+    snapshot = null;
+  }
+
+  public List<CategoryTreeNode> roots() {
+    return snapshot().roots;
+  }
+
+  // The category and everything under it; empty when it is not a live category.
+  public Set<Long> subtreeIds(Long categoryId) {
+    return snapshot().subtreeIds(categoryId);
+  }
+
+  // Sets the category's subtree product stats. One the snapshot does not hold yet, e.g. created
+  // since it was built, has no subcategories to add and keeps its direct stats. Inside a write a
+  // new snapshot could capture uncommitted rows, so only one that already exists is used there.
+  public Category withSubtreeProductStats(Category category) {
+    Snapshot current =
+        TransactionSynchronizationManager.isActualTransactionActive() ? snapshot : snapshot();
+    Integer i = current != null ? current.positions.get(category.getId()) : null;
+    if (i != null) {
+      category.setSubtreeProductStats(
+          current.counts[i], current.minPrices[i], current.maxPrices[i]);
+    } else {
+      category.setSubtreeProductStats(
+          category.getDirectProductCount(),
+          category.getDirectMinPrice(),
+          category.getDirectMaxPrice());
+    }
+    return category;
+  }
+
+  public Optional<String> path(Long categoryId) {
+    Snapshot current = snapshot();
+    Integer i = current.positions.get(categoryId);
+    return i != null ? Optional.of(current.paths[i]) : Optional.empty();
+  }
+
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      current = snapshot;
+      if (current == null) {
+        long seen = generation.get();
+        current = new Snapshot(categoryRepository.findByIsDeletedFalse());
+        // A change committed while loading must not be hidden behind the older snapshot.
+        if (generation.get() == seen) {
+          snapshot = current;
+        }
+      }
+      return current;
+    }
+  }
+
+  private static final class Snapshot {
+    private final long[] ids;
+    private final String[] paths;
+    private final int[] counts;
+    private final BigDecimal[] minPrices;
+    private final BigDecimal[] maxPrices;
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private final List<CategoryTreeNode> roots;
+
+    private Snapshot(List<Category> categories) {
+      List<Category> sorted = new ArrayList<>(categories);
+      sorted.sort(Comparator.comparing(Category::getPath));
+      ids = new long[sorted.size()];
+      paths = new String[sorted.size()];
+      Map<Long, List<Category>> children = new HashMap<>();
+      for (int i = 0; i < sorted.size(); i++) {
+        Category c = sorted.get(i);
+        ids[i] = c.getId();
+        paths[i] = c.getPath();
+        positions.put(c.getId(), i);
+      }
+      // Children sort after their parent, so walking backwards finishes every subtree before
+      // adding it into the parent's.
+      counts = new int[sorted.size()];
+      minPrices = new BigDecimal[sorted.size()];
+      maxPrices = new BigDecimal[sorted.size()];
+      for (int i = sorted.size() - 1; i >= 0; i--) {
+        Category c = sorted.get(i);
+        counts[i] += c.getDirectProductCount() != null ? c.getDirectProductCount() : 0;
+        minPrices[i] = min(minPrices[i], c.getDirectMinPrice());
+        maxPrices[i] = max(maxPrices[i], c.getDirectMaxPrice());
+        Integer parent = c.getParentId() != null ? positions.get(c.getParentId()) : null;
+        if (parent != null) {
+          counts[parent] += counts[i];
+          minPrices[parent] = min(minPrices[parent], minPrices[i]);
+          maxPrices[parent] = max(maxPrices[parent], maxPrices[i]);
+        }
+      }
+      List<Category> top = new ArrayList<>();
+      for (Category c : sorted) {
+        if (c.getParentId() != null && positions.containsKey(c.getParentId())) {
+          children.computeIfAbsent(c.getParentId(), id -> new ArrayList<>()).add(c);
+        } else {
+          top.add(c);
+        }
+      }
+      roots = nodes(top, children);
+    }
+
+    private static List<CategoryTreeNode> nodes(
+        List<Category> categories, Map<Long, List<Category>> children) {
+      List<Category> ordered = new ArrayList<>(categories);
+      ordered.sort(Comparator.comparing(Category::getName, String.CASE_INSENSITIVE_ORDER));
+      List<CategoryTreeNode> nodes = new ArrayList<>(ordered.size());
+      for (Category c : ordered) {
+        nodes.add(
+            new CategoryTreeNode(
+                c.getId(),
+                c.getName(),
+                c.getParentId(),
+                c.getDepth(),
+                c.getImagePath(),
+                c.getImageThumbPath(),
+                nodes(children.getOrDefault(c.getId(), List.of()), children)));
+      }
+      return nodes;
+    }
+
+    private static BigDecimal min(BigDecimal a, BigDecimal b) {
+      return a == null ? b : b == null ? a : a.min(b);
+    }
+
+    private static BigDecimal max(BigDecimal a, BigDecimal b) {
+      return a == null ? b : b == null ? a : a.max(b);
+    }
+
+    private Set<Long> subtreeIds(Long categoryId) {
+      Integer from = categoryId != null ? positions.get(categoryId) : null;
+      if (from == null) {
+        return Set.of();
+      }
+      String prefix = paths[from];
+      Set<Long> subtree = new HashSet<>();
+      for (int i = from; i < paths.length && paths[i].startsWith(prefix); i++) {
+        subtree.add(ids[i]);
+      }
+      return Set.copyOf(subtree);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.finprodb.backendjava.category.dto;
+
+public class CategoryMoveRequest {
+  // Null moves the category to the top level.
+  private Long parentId;
+
+  public Long getParentId() {
+    return parentId;
+  }
+
+  public void setParentId(Long parentId) {
+    this.parentId = parentId;
+  }
+}
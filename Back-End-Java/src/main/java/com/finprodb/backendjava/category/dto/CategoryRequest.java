@@ -8,6 +8,9 @@ public class CategoryRequest {
 
   private String description;
 
+  // Parent on create; null makes the category a root. Later moves use CategoryMoveRequest.
+  private Long parentId;
+
   public String getName() {
     return name;
   }
@@ -23,4 +26,12 @@ public class CategoryRequest {
   public void setDescription(String description) {
     this.description = description;
   }
+
+  public Long getParentId() {
+    return parentId;
+  }
+
+  public void setParentId(Long parentId) {
+    this.parentId = parentId;
+  }
 }
@@ -0,0 +1,131 @@
+package com.finprodb.backendjava.category.dto;
+
+import com.finprodb.backendjava.category.Category;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// Copy of a category as GET /api/categories serves it, subtree stats included. Cached listings
+// hold these rather than entities, which CategoryTree fills in again on every read.
+public class CategoryResponse {
+  private final Long id;
+  private final String name;
+  private final String description;
+  private final Long parentId;
+  private final String path;
+  private final Integer depth;
+  private final String imagePath;
+  private final String imageThumbPath;
+  private final String imageCardPath;
+  private final String imageFullPath;
+  private final Integer directProductCount;
+  private final BigDecimal directMinPrice;
+  private final BigDecimal directMaxPrice;
+  private final Integer productCount;
+  private final BigDecimal minPrice;
+  private final BigDecimal maxPrice;
+  private final Instant createdAt;
+  private final Instant updatedAt;
+  private final Boolean isDeleted;
+
+  private CategoryResponse(Category category) {
+    this.id = category.getId();
+    this.name = category.getName();
+    this.description = category.getDescription();
+    this.parentId = category.getParentId();
+    this.path = category.getPath();
+    this.depth = category.getDepth();
+    this.imagePath = category.getImagePath();
+    this.imageThumbPath = category.getImageThumbPath();
+    this.imageCardPath = category.getImageCardPath();
+    this.imageFullPath = category.getImageFullPath();
+    this.directProductCount = category.getDirectProductCount();
+    this.directMinPrice = category.getDirectMinPrice();
+    this.directMaxPrice = category.getDirectMaxPrice();
+    this.productCount = category.getProductCount();
+    this.minPrice = category.getMinPrice();
+    this.maxPrice = category.getMaxPrice();
+    this.createdAt = category.getCreatedAt();
+    this.updatedAt = category.getUpdatedAt();
+    this.isDeleted = category.getIsDeleted();
+  }
+
+  public static CategoryResponse from(Category category) {
+    return new CategoryResponse(category);
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public Long getParentId() {
+    return parentId;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Integer getDepth() {
+    return depth;
+  }
+
+  public String getImagePath() {
+    return imagePath;
+  }
+
+  public String getImageThumbPath() {
+    return imageThumbPath;
+  }
+
+  public String getImageCardPath() {
+    return imageCardPath;
+  }
+
+  public String getImageFullPath() {
+    return imageFullPath;
+  }
+
+  public Integer getDirectProductCount() {
+    return directProductCount;
+  }
+
+  public BigDecimal getDirectMinPrice() {
+    return directMinPrice;
+  }
+
+  public BigDecimal getDirectMaxPrice() {
+    return directMaxPrice;
+  }
+
+  public Integer getProductCount() {
+    return productCount;
+  }
+
+  public BigDecimal getMinPrice() {
+    return minPrice;
+  }
+
+  public BigDecimal getMaxPrice() {
+    return maxPrice;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public Boolean getIsDeleted() {
+    return isDeleted;
+  }
+}
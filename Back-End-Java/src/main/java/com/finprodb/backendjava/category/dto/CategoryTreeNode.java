@@ -0,0 +1,58 @@
+package com.finprodb.backendjava.category.dto;
+
+import java.util.List;
+
+public class CategoryTreeNode {
+  private final Long id;
+  private final String name;
+  private final Long parentId;
+  private final int depth;
+  private final String imagePath;
+  private final String imageThumbPath;
+  private final List<CategoryTreeNode> children;
+
+  public CategoryTreeNode(
+      Long id,
+      String name,
+      Long parentId,
+      int depth,
+      String imagePath,
+      String imageThumbPath,
+      List<CategoryTreeNode> children) {
+    this.id = id;
+    this.name = name;
+    this.parentId = parentId;
+    this.depth = depth;
+    this.imagePath = imagePath;
+    this.imageThumbPath = imageThumbPath;
+    this.children = List.copyOf(children);
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Long getParentId() {
+    return parentId;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public String getImagePath() {
+    return imagePath;
+  }
+
+  public String getImageThumbPath() {
+    return imageThumbPath;
+  }
+
+  public List<CategoryTreeNode> getChildren() {
+    return children;
+  }
+}
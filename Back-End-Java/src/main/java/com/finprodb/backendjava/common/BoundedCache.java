@@ -0,0 +1,118 @@
+package com.finprodb.backendjava.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+public class BoundedCache<K, V> {
+  private final String name;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+  private long weight;
+  private long generation;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  public BoundedCache(String name, long maxWeight, ToLongFunction<V> weigher) {
+    this.name = name;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public V getOrLoad(K key, Supplier<V> loader) {
+    long loadGeneration;
+    synchronized (this) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        hits++;
+        return entry.value;
+      }
+      misses++;
+      loadGeneration = generation;
+    }
+
+    V value = loader.get();
+    long valueWeight = Math.max(weigher.applyAsLong(value), 1L);
+
+    synchronized (this) {
+      // A mutation committed while we were loading; the value may already be stale.
+      if (loadGeneration != generation || valueWeight > maxWeight) {
+        return value;
+      }
+      Entry<V> previous = entries.put(key, new Entry<>(value, valueWeight));
+      if (previous != null) {
+        weight -= previous.weight;
+      }
+      weight += valueWeight;
+      evictIfNeeded();
+    }
+    return value;
+  }
+
+  // Drops the entries that match. Loads already running are not stored, as after invalidateAll,
+  // since they may have read what the caller is invalidating.
+  public synchronized void invalidateIf(BiPredicate<K, V> stale) {
+    generation++;
+    invalidations++;
+    Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<K, Entry<V>> entry = it.next();
+      if (stale.test(entry.getKey(), entry.getValue().value)) {
+        it.remove();
+        weight -= entry.getValue().weight;
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    generation++;
+    invalidations++;
+    entries.clear();
+    weight = 0;
+  }
+
+  public synchronized Map<String, Object> stats() {
+    long requests = hits + misses;
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("entries", entries.size());
+    stats.put("weight", weight);
+    stats.put("maxWeight", maxWeight);
+    stats.put("hits", hits);
+    stats.put("misses", misses);
+    stats.put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+    stats.put("evictions", evictions);
+    stats.put("invalidations", invalidations);
+    return stats;
+  }
+
+  private void evictIfNeeded() {
+    Iterator<Entry<V>> it = entries.values().iterator();
+    while (weight > maxWeight && it.hasNext()) {
+      Entry<V> eldest = it.next();
+      it.remove();
+      weight -= eldest.weight;
+      evictions++;
+    }
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long weight;
+
+    private Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.finprodb.backendjava.common;
+
+import com.finprodb.backendjava.category.CategoryChangedEvent;
+import com.finprodb.backendjava.product.ProductChangedEvent;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.WebRequest;
+
+@Component
+public class CatalogVersions {
+  // Prefix keeps validators from two processes (or two boots) from ever colliding.
+  private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+  private final Version products = new Version();
+  private final Version categories = new Version();
+
+  // Conditional GET of a catalog read: null once the request has been answered 304 Not Modified,
+  // otherwise the response built from a 200 that already carries no-cache and the validators.
+  // They are taken before the body is read, so a change racing the read only costs the next
+  // request a refetch.
+  public <T> ResponseEntity<T> ifProductsModified(
+      WebRequest request, Function<ResponseEntity.BodyBuilder, ResponseEntity<T>> response) {
+    return products.ifModified("p", request, response);
+  }
+
+  public <T> ResponseEntity<T> ifCategoriesModified(
+      WebRequest request, Function<ResponseEntity.BodyBuilder, ResponseEntity<T>> response) {
+    return categories.ifModified("c", request, response);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onProductChanged(ProductChangedEvent event) {
+    products.bump();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCategoryChanged(CategoryChangedEvent event) {
+    categories.bump();
+    // Product listings filtered by category follow the tree.
+    if (event.isTreeChanged()) {
+      products.bump();
+    }
+  }
+
+  private final class Version {
+    private final AtomicLong counter = new AtomicLong();
+    // HTTP dates have second precision, so every bump moves Last-Modified by at least a second.
+    private final AtomicLong lastModified = new AtomicLong(nowRoundedUp());
+
+    private void bump() {
+      counter.incrementAndGet();
+      lastModified.accumulateAndGet(nowRoundedUp(), (prev, now) -> Math.max(prev + 1000, now));
+    }
+
+    private <T> ResponseEntity<T> ifModified(
+        String scope,
+        WebRequest request,
+        Function<ResponseEntity.BodyBuilder, ResponseEntity<T>> response) {
+      String etag = "\"" + scope + "-" + instanceId + "-" + counter.get() + "\"";
+      long modified = lastModified.get();
+      if (request.checkNotModified(etag, modified)) {
+        return null;
+      }
+      return response.apply(
+          ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(etag).lastModified(modified));
+    }
+  }
+
+  private static long nowRoundedUp() {
+    return (System.currentTimeMillis() / 1000 + 1) * 1000;
+  }
+}
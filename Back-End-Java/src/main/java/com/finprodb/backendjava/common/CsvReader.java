@@ -0,0 +1,97 @@
+package com.finprodb.backendjava.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 reader: quoted fields may contain commas, doubled quotes and line breaks.
+public class CsvReader implements Closeable {
+  private final Reader reader;
+  private final char[] buffer = new char[8192];
+  private int position;
+  private int limit;
+  private long line = 1;
+  private long recordLine;
+
+  public CsvReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  public List<String> next() throws IOException {
+    int c = read();
+    while (c == '\r' || c == '\n') {
+      c = read();
+    }
+    if (c < 0) {
+      return null;
+    }
+    recordLine = line;
+
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (c < 0) {
+          throw new IllegalArgumentException("Unterminated quoted field at line " + recordLine);
+        }
+        if (c == '"') {
+          int peek = read();
+          if (peek == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            c = peek;
+            continue;
+          }
+        } else {
+          field.append((char) c);
+        }
+      } else if (c == '"' && field.length() == 0) {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\r' || c == '\n' || c < 0) {
+        if (c == '\r') {
+          int peek = read();
+          if (peek != '\n' && peek >= 0) {
+            position--;
+          }
+        }
+        fields.add(field.toString());
+        return fields;
+      } else {
+        field.append((char) c);
+      }
+      c = read();
+    }
+  }
+
+  public long getRecordLine() {
+    return recordLine;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private int read() throws IOException {
+    if (position == limit) {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    char c = buffer[position++];
+    if (c == '\n') {
+      line++;
+    }
+    return c;
+  }
+}
@@ -0,0 +1,37 @@
+package com.finprodb.backendjava.common;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class CsvWriter {
+  private final Writer writer;
+
+  public CsvWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  public void writeRow(Object... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      writeField(values[i] != null ? values[i].toString() : "");
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeField(String value) throws IOException {
+    boolean quote =
+        value.indexOf(',') >= 0
+            || value.indexOf('"') >= 0
+            || value.indexOf('\n') >= 0
+            || value.indexOf('\r') >= 0;
+    if (!quote) {
+      writer.write(value);
+      return;
+    }
+    writer.write('"');
+    writer.write(value.replace("\"", "\"\""));
+    writer.write('"');
+  }
+}
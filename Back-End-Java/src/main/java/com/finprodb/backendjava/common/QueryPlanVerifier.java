@@ -0,0 +1,282 @@
+package com.finprodb.backendjava.common;
+
+import com.finprodb.backendjava.address.AddressRepository;
+import com.finprodb.backendjava.cart.CartTable;
+import com.finprodb.backendjava.category.CategoryRepository;
+import com.finprodb.backendjava.order.OrderItemRepository;
+import com.finprodb.backendjava.order.OrderRepository;
+import com.finprodb.backendjava.order.OrderStatus;
+import com.finprodb.backendjava.payment.PaymentTransactionRepository;
+import com.finprodb.backendjava.product.ProductRepository;
+import com.finprodb.backendjava.user.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+// Startup tripwire: runs the hot repository queries once, EXPLAINs the SQL they actually send,
+// and refuses to start when one of them would scan a whole table, e.g. after a migration dropped
+// or renamed an index.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryPlanVerifier implements ApplicationRunner {
+  private static final String PATH = "/1/";
+  private static final PageRequest NEWEST_PAGE =
+      PageRequest.of(0, 20, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+  private static final PageRequest WINDOW = PageRequest.of(0, 21);
+
+  // Table and alias of every table a statement reads, as Hibernate and CartTable write them.
+  private static final Pattern TABLE_ALIAS =
+      Pattern.compile(
+          "\\b(?:from|join)\\s+(\\w+)(?:\\s+(?:as\\s+)?(\\w+))?", Pattern.CASE_INSENSITIVE);
+
+  static final Map<String, Consumer<Repositories>> HOT_QUERIES = new LinkedHashMap<>();
+
+  static {
+    HOT_QUERIES.put(
+        "products.newest", r -> r.products().findActiveCreatedBefore(Instant.now(), 1L, WINDOW));
+    HOT_QUERIES.put(
+        "products.newest-in-category",
+        r -> r.products().findActiveUnderPathCreatedBefore(PATH, Instant.now(), 1L, WINDOW));
+    HOT_QUERIES.put(
+        "products.price-asc", r -> r.products().findActivePricedAbove(BigDecimal.ZERO, 1L, WINDOW));
+    HOT_QUERIES.put(
+        "products.price-asc-in-category",
+        r -> r.products().findActiveUnderPathPricedAbove(PATH, BigDecimal.ZERO, 1L, WINDOW));
+    HOT_QUERIES.put("products.listing", r -> r.products().findActiveListing(NEWEST_PAGE));
+    HOT_QUERIES.put(
+        "products.listing-in-category",
+        r -> r.products().findActiveListingUnderPath(PATH, NEWEST_PAGE));
+    HOT_QUERIES.put(
+        "products.bootstrap",
+        r -> r.products().findTop500ByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(0L));
+    HOT_QUERIES.put("categories.subtree", r -> r.categories().findMaxDepthUnder(PATH));
+    HOT_QUERIES.put(
+        "categories.children", r -> r.categories().existsByParentIdAndIsDeletedFalse(1L));
+    HOT_QUERIES.put("orders.by-user", r -> r.orders().findByUserOrderByCreatedAtDesc(r.user()));
+    HOT_QUERIES.put(
+        "orders.by-status",
+        r -> r.orders().findByStatusOrderByCreatedAtDesc(OrderStatus.PAID, PageRequest.of(0, 20)));
+    HOT_QUERIES.put(
+        "orders.sum-by-status", r -> r.orders().sumTotalAmountByStatus(OrderStatus.COMPLETED));
+    HOT_QUERIES.put("order_items.by-order", r -> r.orderItems().findByOrder(r.order()));
+    HOT_QUERIES.put(
+        "payment_transactions.latest-by-order",
+        r -> r.payments().findTopByOrderOrderByCreatedAtDesc(r.order()));
+    HOT_QUERIES.put("cart_items.by-user", r -> r.cart().load(1L));
+    HOT_QUERIES.put(
+        "addresses.by-user", r -> r.addresses().findByUserOrderByCreatedAtDesc(r.user()));
+    HOT_QUERIES.put(
+        "addresses.default-by-user", r -> r.addresses().findFirstByUserAndIsDefaultTrue(r.user()));
+  }
+
+  record Repositories(
+      EntityManager entityManager,
+      ProductRepository products,
+      CategoryRepository categories,
+      OrderRepository orders,
+      OrderItemRepository orderItems,
+      PaymentTransactionRepository payments,
+      AddressRepository addresses,
+      CartTable cart) {
+    User user() {
+      return entityManager.getReference(User.class, 1L);
+    }
+
+    // Order here is the entity; the annotation on this class holds the simple name.
+    com.finprodb.backendjava.order.Order order() {
+      return entityManager.getReference(com.finprodb.backendjava.order.Order.class, 1L);
+    }
+  }
+
+  private record PlanRow(String sql, String table, String type) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SessionFactory sessionFactory;
+  private final boolean enabled;
+  private final long minRows;
+
+  public QueryPlanVerifier(
+      JdbcTemplate jdbcTemplate,
+      EntityManagerFactory entityManagerFactory,
+      @Value("${app.schema.verify-plans:true}") boolean enabled,
+      @Value("${app.schema.verify-min-rows:1000}") long minRows) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    this.enabled = enabled;
+    this.minRows = minRows;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!enabled || !isMySql()) {
+      return;
+    }
+    // On small tables a scan is the optimizer's right call, so only tables that have grown past
+    // minRows are held to the rule.
+    Map<String, Long> tableRows = new HashMap<>();
+    jdbcTemplate.query(
+        "select table_name, table_rows from information_schema.tables"
+            + " where table_schema = database()",
+        rs -> {
+          tableRows.put(rs.getString(1).toLowerCase(Locale.ROOT), rs.getLong(2));
+        });
+
+    List<String> failures = new ArrayList<>();
+    jdbcTemplate.execute(
+        (ConnectionCallback<Void>)
+            connection -> {
+              verify(connection, tableRows, failures);
+              return null;
+            });
+    if (!failures.isEmpty()) {
+      throw new IllegalStateException(
+          "Full table scan in hot query plans: "
+              + String.join(", ", failures)
+              + ". Check the db/migration indexes, or set SCHEMA_VERIFY_PLANS=false.");
+    }
+  }
+
+  private void verify(Connection connection, Map<String, Long> tableRows, List<String> failures) {
+    List<PlanRow> plan = new ArrayList<>();
+    Connection explaining = explaining(connection, plan);
+    try (Session session = sessionFactory.withOptions().connection(explaining).openSession()) {
+      JpaRepositoryFactory factory = new JpaRepositoryFactory(session);
+      Repositories repositories =
+          new Repositories(
+              session,
+              factory.getRepository(ProductRepository.class),
+              factory.getRepository(CategoryRepository.class),
+              factory.getRepository(OrderRepository.class),
+              factory.getRepository(OrderItemRepository.class),
+              factory.getRepository(PaymentTransactionRepository.class),
+              factory.getRepository(AddressRepository.class),
+              new CartTable(new JdbcTemplate(new SingleConnectionDataSource(explaining, true))));
+      HOT_QUERIES.forEach(
+          (name, query) -> {
+            plan.clear();
+            query.accept(repositories);
+            session.clear();
+            for (PlanRow row : plan) {
+              // EXPLAIN names each row by the alias its statement gave the table, so a scan of a
+              // joined table is charged to that table, not to the one the query is named after.
+              String table = tablesByAlias(row.sql()).getOrDefault(row.table(), row.table());
+              if ("ALL".equals(row.type()) && tableRows.getOrDefault(table, 0L) >= minRows) {
+                failures.add(name + " scans " + table);
+              }
+            }
+          });
+    }
+  }
+
+  private static Map<String, String> tablesByAlias(String sql) {
+    Map<String, String> tables = new HashMap<>();
+    Matcher matcher = TABLE_ALIAS.matcher(sql);
+    while (matcher.find()) {
+      String table = matcher.group(1).toLowerCase(Locale.ROOT);
+      tables.put(table, table);
+      if (matcher.group(2) != null) {
+        tables.put(matcher.group(2), table);
+      }
+    }
+    return tables;
+  }
+
+  // The connection the hot queries run on: every query is EXPLAINed with its bound parameters
+  // before it runs, and the plan rows are added to plan.
+  private static Connection explaining(Connection connection, List<PlanRow> plan) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              Object result = invoke(connection, method, args);
+              if (method.getName().equals("prepareStatement")) {
+                return explaining((PreparedStatement) result, connection, (String) args[0], plan);
+              }
+              return result;
+            });
+  }
+
+  private static PreparedStatement explaining(
+      PreparedStatement statement, Connection connection, String sql, List<PlanRow> plan) {
+    List<Object[]> bindings = new ArrayList<>();
+    return (PreparedStatement)
+        Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class},
+            (proxy, method, args) -> {
+              if (method.getName().startsWith("set")
+                  && args != null
+                  && args.length >= 2
+                  && args[0] instanceof Integer) {
+                bindings.add(new Object[] {method, args});
+              } else if (method.getName().equals("clearParameters")) {
+                bindings.clear();
+              } else if (method.getName().equals("executeQuery") && args == null) {
+                explain(connection, sql, bindings, plan);
+              }
+              return invoke(statement, method, args);
+            });
+  }
+
+  private static void explain(
+      Connection connection, String sql, List<Object[]> bindings, List<PlanRow> plan)
+      throws Throwable {
+    try (PreparedStatement explain = connection.prepareStatement("explain " + sql)) {
+      for (Object[] binding : bindings) {
+        invoke(explain, (Method) binding[0], (Object[]) binding[1]);
+      }
+      try (ResultSet rs = explain.executeQuery()) {
+        while (rs.next()) {
+          plan.add(new PlanRow(sql, rs.getString("table"), rs.getString("type")));
+        }
+      }
+    }
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private boolean isMySql() {
+    String product =
+        jdbcTemplate.execute(
+            (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+    return product != null
+        && (product.equalsIgnoreCase("MySQL") || product.equalsIgnoreCase("MariaDB"));
+  }
+}
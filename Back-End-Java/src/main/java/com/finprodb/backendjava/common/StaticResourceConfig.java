@@ -1,13 +1,48 @@
 package com.finprodb.backendjava.common;
 
+import java.time.Duration;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.PathResourceResolver;
 
 @Configuration
 public class StaticResourceConfig implements WebMvcConfigurer {
+  public static final CacheControl UPLOAD_CACHE =
+      CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
   @Override
   public void addResourceHandlers(ResourceHandlerRegistry registry) {
-    registry.addResourceHandler("/uploads/**").addResourceLocations("file:uploads/");
+    // Upload names are content hashes (older ones carry an upload timestamp) and files are never
+    // rewritten in place, so a URL always means the same bytes: cache for a year, never
+    // revalidate, and use the file name as a strong ETag. Plain full-file reads are usually
+    // answered earlier by UploadFileFilter; ranges and gzip siblings are served from here.
+    registry
+        .addResourceHandler("/uploads/**")
+        .addResourceLocations("file:uploads/")
+        .setCacheControl(UPLOAD_CACHE)
+        .setEtagGenerator(StaticResourceConfig::etag)
+        // No resolution cache: the upload sweeper removes files, and a cached resource for a
+        // removed file fails with a 500 instead of a 404.
+        .resourceChain(false)
+        .addResolver(new EncodedResourceResolver())
+        .addResolver(new PathResourceResolver());
+  }
+
+  // A precompressed sibling is a different representation and needs its own strong ETag.
+  private static String etag(Resource resource) {
+    String etag = resource.getFilename();
+    if (resource instanceof HttpResource http) {
+      String encoding = http.getResponseHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+      if (encoding != null) {
+        etag += "-" + encoding;
+      }
+    }
+    return etag;
   }
 }
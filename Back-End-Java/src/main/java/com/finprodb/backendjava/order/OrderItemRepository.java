@@ -1,10 +1,19 @@
 package com.finprodb.backendjava.order;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
   @EntityGraph(attributePaths = {"product"})
   List<OrderItem> findByOrder(Order order);
+
+  // Rows of [productId, total quantity].
+  @Query(
+      "select oi.product.id, sum(oi.quantity) from OrderItem oi"
+          + " where oi.order.status in :statuses group by oi.product.id")
+  List<Object[]> sumQuantityByProduct(@Param("statuses") Collection<OrderStatus> statuses);
 }
@@ -0,0 +1,21 @@
+package com.finprodb.backendjava.order;
+
+import java.util.Map;
+
+public class OrderPaidEvent {
+  private final Long orderId;
+  private final Map<Long, Long> quantitiesByProduct;
+
+  public OrderPaidEvent(Long orderId, Map<Long, Long> quantitiesByProduct) {
+    this.orderId = orderId;
+    this.quantitiesByProduct = Map.copyOf(quantitiesByProduct);
+  }
+
+  public Long getOrderId() {
+    return orderId;
+  }
+
+  public Map<Long, Long> getQuantitiesByProduct() {
+    return quantitiesByProduct;
+  }
+}
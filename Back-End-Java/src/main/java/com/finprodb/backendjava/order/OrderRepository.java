@@ -1,14 +1,18 @@
 package com.finprodb.backendjava.order;
 
 import com.finprodb.backendjava.user.User;
+import jakarta.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -26,6 +30,23 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
   @EntityGraph(attributePaths = {"user"})
   Page<Order> findByStatusOrderByCreatedAtDesc(OrderStatus status, Pageable pageable);
 
+  // Forward-only reads for exports; the caller must hold a transaction and close the stream.
+  @EntityGraph(attributePaths = {"user", "approvedBy"})
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select o from Order o order by o.id")
+  Stream<Order> streamForExport();
+
+  @EntityGraph(attributePaths = {"user", "approvedBy"})
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select o from Order o where o.status = :status order by o.id")
+  Stream<Order> streamForExportByStatus(@Param("status") OrderStatus status);
+
   long countByStatus(OrderStatus status);
 
   @Query("select coalesce(sum(o.totalAmount), 0) from Order o where o.status = :status")
@@ -3,7 +3,7 @@ package com.finprodb.backendjava.order;
 import com.finprodb.backendjava.address.Address;
 import com.finprodb.backendjava.address.AddressRepository;
 import com.finprodb.backendjava.cart.CartItem;
-import com.finprodb.backendjava.cart.CartItemRepository;
+import com.finprodb.backendjava.cart.CartService;
 import com.finprodb.backendjava.order.dto.CheckoutRequest;
 import com.finprodb.backendjava.user.User;
 import java.math.BigDecimal;
@@ -17,23 +17,23 @@ import org.springframework.transaction.annotation.Transactional;
 public class OrderService {
   private final OrderRepository orderRepository;
   private final OrderItemRepository orderItemRepository;
-  private final CartItemRepository cartItemRepository;
+  private final CartService cartService;
   private final AddressRepository addressRepository;
 
   public OrderService(
       OrderRepository orderRepository,
       OrderItemRepository orderItemRepository,
-      CartItemRepository cartItemRepository,
+      CartService cartService,
       AddressRepository addressRepository) {
     this.orderRepository = orderRepository;
     this.orderItemRepository = orderItemRepository;
-    this.cartItemRepository = cartItemRepository;
+    this.cartService = cartService;
     this.addressRepository = addressRepository;
   }
 
   @Transactional
   public Order checkout(User user, CheckoutRequest req) {
-    List<CartItem> cartItems = cartItemRepository.findByUser(user);
+    List<CartItem> cartItems = cartService.getCart(user);
     if (cartItems.isEmpty()) {
       throw new IllegalArgumentException("Cart is empty");
     }
@@ -89,7 +89,7 @@ public class OrderService {
     savedOrder.setTotalAmount(total);
     Order updated = orderRepository.save(savedOrder);
 
-    cartItemRepository.deleteByUser(user);
+    cartService.clear(user);
     return updated;
   }
 
@@ -3,11 +3,13 @@ package com.finprodb.backendjava.payment;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.finprodb.backendjava.order.Order;
 import com.finprodb.backendjava.order.OrderItem;
+import com.finprodb.backendjava.order.OrderPaidEvent;
 import com.finprodb.backendjava.order.OrderRepository;
 import com.finprodb.backendjava.order.OrderService;
 import com.finprodb.backendjava.order.OrderStatus;
 import com.finprodb.backendjava.payment.dto.SnapCreateResponse;
 import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.ProductChangedEvent;
 import com.finprodb.backendjava.product.ProductRepository;
 import com.finprodb.backendjava.user.User;
 import java.math.BigDecimal;
@@ -15,9 +17,11 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +34,7 @@ public class PaymentService {
   private final MidtransClient midtransClient;
   private final MidtransProperties midtransProperties;
   private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher eventPublisher;
 
   public PaymentService(
       PaymentTransactionRepository paymentTransactionRepository,
@@ -38,7 +43,8 @@ public class PaymentService {
       ProductRepository productRepository,
       MidtransClient midtransClient,
       MidtransProperties midtransProperties,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      ApplicationEventPublisher eventPublisher) {
     this.paymentTransactionRepository = paymentTransactionRepository;
     this.orderService = orderService;
     this.orderRepository = orderRepository;
@@ -46,6 +52,7 @@ public class PaymentService {
     this.midtransClient = midtransClient;
     this.midtransProperties = midtransProperties;
     this.objectMapper = objectMapper;
+    this.eventPublisher = eventPublisher;
   }
 
   @Transactional
@@ -140,6 +147,8 @@ public class PaymentService {
 
       if (shouldDecrementStock) {
         List<OrderItem> items = orderService.getItems(order);
+        List<Product> changed = new ArrayList<>(items.size());
+        Map<Long, Long> sold = new HashMap<>();
         for (OrderItem item : items) {
           Product p = item.getProduct();
           int current = p.getStock() == null ? 0 : p.getStock();
@@ -148,8 +157,12 @@ public class PaymentService {
             next = 0;
           }
           p.setStock(next);
-          productRepository.save(p);
+          changed.add(productRepository.save(p));
+          sold.merge(p.getId(), item.getQuantity() == null ? 0L : item.getQuantity(), Long::sum);
         }
+        eventPublisher.publishEvent(new OrderPaidEvent(order.getId(), sold));
+        eventPublisher.publishEvent(
+            new ProductChangedEvent(changed, ProductChangedEvent.Scope.FIELDS));
       }
     } else if (isFailure(transactionStatus)) {
       tx.setStatus(PaymentStatus.FAILED);
@@ -1,10 +1,17 @@
 package com.finprodb.backendjava.product;
 
+import com.finprodb.backendjava.common.ExportFormat;
+import com.finprodb.backendjava.product.dto.ProductBulkUpdateRequest;
+import com.finprodb.backendjava.product.dto.ProductBulkUpdateResponse;
+import com.finprodb.backendjava.product.dto.ProductImportResponse;
 import com.finprodb.backendjava.product.dto.ProductRequest;
 import com.finprodb.backendjava.product.dto.ProductResponse;
 import jakarta.validation.Valid;
+import java.io.InputStream;
 import java.util.Map;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,20 +21,32 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/admin/products")
 @PreAuthorize("permitAll()")
 public class AdminProductController {
   private final ProductService productService;
+  private final ProductImportService productImportService;
+  private final ProductExportService productExportService;
+  private final ProductBulkUpdateService productBulkUpdateService;
 
-  public AdminProductController(ProductService productService) {
+  public AdminProductController(
+      ProductService productService,
+      ProductImportService productImportService,
+      ProductExportService productExportService,
+      ProductBulkUpdateService productBulkUpdateService) {
     this.productService = productService;
+    this.productImportService = productImportService;
+    this.productExportService = productExportService;
+    this.productBulkUpdateService = productBulkUpdateService;
   }
 
   @GetMapping
@@ -36,6 +55,21 @@ public class AdminProductController {
     return ResponseEntity.ok(productService.listAll(page, size).map(ProductResponse::from));
   }
 
+  @PreAuthorize("hasRole('ADMIN')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> export(
+      @RequestParam(defaultValue = "CSV") ExportFormat format) {
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getContentType()))
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment()
+                .filename("products." + format.getExtension())
+                .build()
+                .toString())
+        .body(out -> productExportService.export(format, out));
+  }
+
   @GetMapping("/{id}")
   public ResponseEntity<?> getById(@PathVariable Long id) {
     return productService
@@ -49,6 +83,33 @@ public class AdminProductController {
     return ResponseEntity.ok(ProductResponse.from(productService.create(req)));
   }
 
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping(
+      path = "/import",
+      consumes = {"text/csv", "application/x-ndjson", "application/jsonl"})
+  public ResponseEntity<ProductImportResponse> importProducts(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+    return ResponseEntity.ok(
+        productImportService.importProducts(body, ProductImportFormat.fromContentType(contentType)));
+  }
+
+  @PreAuthorize("hasRole('ADMIN')")
+  @GetMapping("/import/status")
+  public ResponseEntity<?> importStatus() {
+    ProductImportResponse status = productImportService.status();
+    if (status == null) {
+      return ResponseEntity.status(404).body(Map.of("message", "No import has run yet"));
+    }
+    return ResponseEntity.ok(status);
+  }
+
+  @PreAuthorize("hasRole('ADMIN')")
+  @PostMapping("/bulk-update")
+  public ResponseEntity<ProductBulkUpdateResponse> bulkUpdate(
+      @Valid @RequestBody ProductBulkUpdateRequest req) {
+    return ResponseEntity.ok(productBulkUpdateService.update(req));
+  }
+
   @PutMapping("/{id}")
   public ResponseEntity<ProductResponse> update(
       @PathVariable Long id, @Valid @RequestBody ProductRequest req) {
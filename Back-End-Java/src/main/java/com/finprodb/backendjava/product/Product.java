@@ -40,6 +40,15 @@ public class Product {
   @Column
   private String imagePath;
 
+  @Column
+  private String imageThumbPath;
+
+  @Column
+  private String imageCardPath;
+
+  @Column
+  private String imageFullPath;
+
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "category_id")
   private Category category;
@@ -130,6 +139,30 @@ public class Product {
     this.imagePath = imagePath;
   }
 
+  public String getImageThumbPath() {
+    return imageThumbPath;
+  }
+
+  public void setImageThumbPath(String imageThumbPath) {
+    this.imageThumbPath = imageThumbPath;
+  }
+
+  public String getImageCardPath() {
+    return imageCardPath;
+  }
+
+  public void setImageCardPath(String imageCardPath) {
+    this.imageCardPath = imageCardPath;
+  }
+
+  public String getImageFullPath() {
+    return imageFullPath;
+  }
+
+  public void setImageFullPath(String imageFullPath) {
+    this.imageFullPath = imageFullPath;
+  }
+
   public Category getCategory() {
     return category;
   }
@@ -0,0 +1,173 @@
+package com.finprodb.backendjava.product;
+
+import com.finprodb.backendjava.category.CategoryProductStats;
+import com.finprodb.backendjava.product.dto.ProductBulkUpdateRequest;
+import com.finprodb.backendjava.product.dto.ProductBulkUpdateResponse;
+import jakarta.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ProductBulkUpdateService {
+  private static final int CHUNK_SIZE = 500;
+
+  private final ProductRepository productRepository;
+  private final CategoryProductStats categoryStats;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final EntityManager entityManager;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public ProductBulkUpdateService(
+      ProductRepository productRepository,
+      CategoryProductStats categoryStats,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      EntityManager entityManager,
+      ApplicationEventPublisher eventPublisher) {
+    this.productRepository = productRepository;
+    this.categoryStats = categoryStats;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.entityManager = entityManager;
+    this.eventPublisher = eventPublisher;
+  }
+
+  public ProductBulkUpdateResponse update(ProductBulkUpdateRequest req) {
+    // Later entries for the same id win.
+    Map<Long, ProductBulkUpdateRequest.Item> byId = new LinkedHashMap<>();
+    for (ProductBulkUpdateRequest.Item item : req.getItems()) {
+      byId.put(item.getId(), item);
+    }
+
+    List<ProductBulkUpdateRequest.Item> items = new ArrayList<>(byId.values());
+    List<Long> notFound = new ArrayList<>();
+    int updated = 0;
+    for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+      List<ProductBulkUpdateRequest.Item> chunk =
+          items.subList(from, Math.min(from + CHUNK_SIZE, items.size()));
+      Integer rows = transactionTemplate.execute(status -> updateChunk(chunk, notFound));
+      updated += rows != null ? rows : 0;
+      // The chunk's products were reloaded after its UPDATE and handed to the listeners on
+      // commit. The request's open-in-view session would otherwise keep every chunk managed
+      // until the response; cleared, it holds one chunk at a time and no stale copies.
+      entityManager.clear();
+    }
+    return new ProductBulkUpdateResponse(items.size(), updated, notFound);
+  }
+
+  private int updateChunk(List<ProductBulkUpdateRequest.Item> chunk, List<Long> notFound) {
+    List<Object> ids = new ArrayList<>(chunk.size());
+    for (ProductBulkUpdateRequest.Item item : chunk) {
+      ids.add(item.getId());
+    }
+    Set<Long> existing =
+        new HashSet<>(
+            jdbcTemplate.queryForList(
+                "select id from products where deleted_at is null and id in ("
+                    + placeholders(ids.size())
+                    + ")",
+                Long.class,
+                ids.toArray()));
+
+    List<ProductBulkUpdateRequest.Item> live = new ArrayList<>(existing.size());
+    for (ProductBulkUpdateRequest.Item item : chunk) {
+      if (existing.contains(item.getId())) {
+        live.add(item);
+      } else {
+        notFound.add(item.getId());
+      }
+    }
+    if (live.isEmpty()) {
+      return 0;
+    }
+
+    // One statement per chunk: each column becomes a CASE over the ids that set it.
+    StringBuilder sql = new StringBuilder("update products set updated_at = ?");
+    List<Object> args = new ArrayList<>();
+    args.add(Timestamp.from(Instant.now()));
+    appendCase(sql, args, "price", live, ProductBulkUpdateRequest.Item::getPrice);
+    appendCase(sql, args, "stock", live, ProductBulkUpdateRequest.Item::getStock);
+    appendCase(sql, args, "active", live, ProductBulkUpdateRequest.Item::getActive);
+    sql.append(" where deleted_at is null and id in (");
+    sql.append(placeholders(live.size())).append(')');
+    List<Long> liveIds = new ArrayList<>(live.size());
+    for (ProductBulkUpdateRequest.Item item : live) {
+      args.add(item.getId());
+      liveIds.add(item.getId());
+    }
+
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    int rows = jdbcTemplate.update(sql.toString(), ps -> bind(ps, args, utc));
+
+    List<Product> changed = productRepository.findAllById(liveIds);
+    // Price and active feed the per-category stats; stock alone does not.
+    boolean statsChanged =
+        live.stream().anyMatch(item -> item.getPrice() != null || item.getActive() != null);
+    if (statsChanged) {
+      Set<Long> categoryIds = new HashSet<>();
+      for (Product product : changed) {
+        if (product.getCategory() != null) {
+          categoryIds.add(product.getCategory().getId());
+        }
+      }
+      categoryStats.refresh(categoryIds);
+    }
+    // One event per chunk, so listing caches and ETags move once rather than once per row.
+    eventPublisher.publishEvent(new ProductChangedEvent(changed));
+    return rows;
+  }
+
+  private static void appendCase(
+      StringBuilder sql,
+      List<Object> args,
+      String column,
+      List<ProductBulkUpdateRequest.Item> items,
+      Function<ProductBulkUpdateRequest.Item, Object> value) {
+    StringBuilder whens = new StringBuilder();
+    for (ProductBulkUpdateRequest.Item item : items) {
+      Object v = value.apply(item);
+      if (v != null) {
+        whens.append(" when ? then ?");
+        args.add(item.getId());
+        args.add(v);
+      }
+    }
+    if (whens.length() > 0) {
+      sql.append(", ").append(column).append(" = case id").append(whens);
+      sql.append(" else ").append(column).append(" end");
+    }
+  }
+
+  private static void bind(PreparedStatement ps, List<Object> args, Calendar utc)
+      throws SQLException {
+    for (int i = 0; i < args.size(); i++) {
+      Object arg = args.get(i);
+      if (arg instanceof Timestamp ts) {
+        ps.setTimestamp(i + 1, ts, utc);
+      } else {
+        ps.setObject(i + 1, arg);
+      }
+    }
+  }
+
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+}
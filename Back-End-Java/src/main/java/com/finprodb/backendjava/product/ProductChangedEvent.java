@@ -0,0 +1,42 @@
+package com.finprodb.backendjava.product;
+
+import java.util.List;
+
+public class ProductChangedEvent {
+  // How far a change reaches into product listings. FIELDS changed only what a listing shows of
+  // the products (stock, images), not which products a listing holds or their order. RANKING
+  // carries no products: only the best-seller order moved.
+  public enum Scope {
+    ALL,
+    FIELDS,
+    RANKING
+  }
+
+  private final List<Product> products;
+  private final Scope scope;
+
+  public ProductChangedEvent(List<Product> products) {
+    this(products, Scope.ALL);
+  }
+
+  public ProductChangedEvent(List<Product> products, Scope scope) {
+    this.products = List.copyOf(products);
+    this.scope = scope;
+  }
+
+  public static ProductChangedEvent of(Product product) {
+    return new ProductChangedEvent(List.of(product));
+  }
+
+  public static ProductChangedEvent ranking() {
+    return new ProductChangedEvent(List.of(), Scope.RANKING);
+  }
+
+  public List<Product> getProducts() {
+    return products;
+  }
+
+  public Scope getScope() {
+    return scope;
+  }
+}
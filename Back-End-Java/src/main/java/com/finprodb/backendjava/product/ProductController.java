@@ -1,20 +1,41 @@
 package com.finprodb.backendjava.product;
 
+import com.finprodb.backendjava.common.CatalogVersions;
+import com.finprodb.backendjava.product.dto.ProductCursorResponse;
+import com.finprodb.backendjava.product.dto.ProductFacetsResponse;
 import com.finprodb.backendjava.product.dto.ProductResponse;
+import com.finprodb.backendjava.product.dto.ProductSuggestion;
+import com.finprodb.backendjava.product.sales.RelatedProductsService;
+import com.finprodb.backendjava.product.search.ProductSuggester;
+import java.time.Duration;
+import java.util.List;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
   private final ProductService productService;
+  private final CatalogVersions catalogVersions;
+  private final ProductSuggester productSuggester;
+  private final RelatedProductsService relatedProductsService;
 
-  public ProductController(ProductService productService) {
+  public ProductController(
+      ProductService productService,
+      CatalogVersions catalogVersions,
+      ProductSuggester productSuggester,
+      RelatedProductsService relatedProductsService) {
     this.productService = productService;
+    this.catalogVersions = catalogVersions;
+    this.productSuggester = productSuggester;
+    this.relatedProductsService = relatedProductsService;
   }
 
   @GetMapping
@@ -22,7 +43,45 @@ public class ProductController {
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "10") int size,
       @RequestParam(required = false) String q,
+      @RequestParam(required = false) Long categoryId,
+      @RequestParam(defaultValue = "false") boolean fuzzy,
+      @RequestParam(defaultValue = "DEFAULT") ProductListSort sort,
+      WebRequest request) {
+    return catalogVersions.ifProductsModified(
+        request, ok -> ok.body(productService.listActive(page, size, q, categoryId, fuzzy, sort)));
+  }
+
+  @GetMapping("/scroll")
+  public ResponseEntity<ProductCursorResponse> scroll(
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "NEWEST") ProductCursorSort sort,
       @RequestParam(required = false) Long categoryId) {
-    return ResponseEntity.ok(productService.listActive(page, size, q, categoryId).map(ProductResponse::from));
+    return ResponseEntity.ok(productService.scrollActive(size, after, sort, categoryId));
+  }
+
+  @GetMapping("/facets")
+  public ResponseEntity<ProductFacetsResponse> facets(
+      @RequestParam(required = false) String q,
+      @RequestParam(required = false) Long categoryId,
+      WebRequest request) {
+    return catalogVersions.ifProductsModified(
+        request, ok -> ok.body(productService.facets(q, categoryId)));
+  }
+
+  @GetMapping("/suggest")
+  public ResponseEntity<List<ProductSuggestion>> suggest(
+      @RequestParam(defaultValue = "") String prefix, @RequestParam(defaultValue = "8") int limit) {
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic())
+        .body(productSuggester.suggest(prefix, limit));
+  }
+
+  @GetMapping("/{id}/related")
+  public ResponseEntity<List<ProductResponse>> related(
+      @PathVariable Long id, @RequestParam(defaultValue = "8") int limit) {
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.maxAge(Duration.ofSeconds(60)).cachePublic())
+        .body(relatedProductsService.related(id, limit));
   }
 }
@@ -0,0 +1,86 @@
+package com.finprodb.backendjava.product;
+
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+final class ProductCursor {
+  private static final Instant MAX_CREATED_AT = Instant.parse("9999-12-31T23:59:59Z");
+
+  private final ProductCursorSort sort;
+  private final Instant createdAt;
+  private final BigDecimal price;
+  private final long id;
+
+  private ProductCursor(ProductCursorSort sort, Instant createdAt, BigDecimal price, long id) {
+    this.sort = sort;
+    this.createdAt = createdAt;
+    this.price = price;
+    this.id = id;
+  }
+
+  static ProductCursor after(ProductCursorSort sort, ProductResponse last) {
+    return new ProductCursor(sort, last.getCreatedAt(), last.getPrice(), last.getId());
+  }
+
+  // Sentinels sort before every real row, so the first page uses the same keyset query.
+  static ProductCursor first(ProductCursorSort sort) {
+    return switch (sort) {
+      case NEWEST -> new ProductCursor(sort, MAX_CREATED_AT, null, Long.MAX_VALUE);
+      case PRICE_ASC -> new ProductCursor(sort, null, BigDecimal.valueOf(-1), 0L);
+      case PRICE_DESC -> new ProductCursor(sort, null, new BigDecimal("1e20"), Long.MAX_VALUE);
+    };
+  }
+
+  static ProductCursor decode(String token, ProductCursorSort expectedSort) {
+    String[] parts;
+    ProductCursorSort sort;
+    try {
+      parts =
+          new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+      sort = ProductCursorSort.valueOf(parts[0]);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+    if (sort != expectedSort) {
+      throw new IllegalArgumentException("Cursor does not match sort");
+    }
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    try {
+      long id = Long.parseLong(parts[2]);
+      if (sort == ProductCursorSort.NEWEST) {
+        return new ProductCursor(sort, Instant.parse(parts[1]), null, id);
+      }
+      return new ProductCursor(sort, null, new BigDecimal(parts[1]), id);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+  }
+
+  String encode() {
+    String value = sort == ProductCursorSort.NEWEST ? createdAt.toString() : price.toPlainString();
+    String raw = sort.name() + "|" + value + "|" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  ProductCursorSort getSort() {
+    return sort;
+  }
+
+  Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  BigDecimal getPrice() {
+    return price;
+  }
+
+  long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,7 @@
+package com.finprodb.backendjava.product;
+
+public enum ProductCursorSort {
+  NEWEST,
+  PRICE_ASC,
+  PRICE_DESC
+}
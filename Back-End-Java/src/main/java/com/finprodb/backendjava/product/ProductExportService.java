@@ -0,0 +1,70 @@
+package com.finprodb.backendjava.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finprodb.backendjava.common.CsvWriter;
+import com.finprodb.backendjava.common.ExportFormat;
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import jakarta.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class ProductExportService {
+  private final ProductRepository productRepository;
+  private final EntityManager entityManager;
+  private final ObjectMapper objectMapper;
+
+  public ProductExportService(
+      ProductRepository productRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+    this.productRepository = productRepository;
+    this.entityManager = entityManager;
+    this.objectMapper = objectMapper;
+  }
+
+  @Transactional(readOnly = true)
+  public void export(ExportFormat format, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    CsvWriter csv = new CsvWriter(writer);
+    if (format == ExportFormat.CSV) {
+      // Same column names as the import endpoint, id included, so an export can be edited and
+      // re-imported: each row updates the product it came from.
+      csv.writeRow(
+          "id", "name", "description", "price", "stock", "active", "categoryId", "imagePath",
+          "createdAt", "updatedAt");
+    }
+
+    try (Stream<Product> products = productRepository.streamForExport()) {
+      Iterator<Product> it = products.iterator();
+      while (it.hasNext()) {
+        Product product = it.next();
+        ProductResponse row = ProductResponse.from(product);
+        entityManager.detach(product);
+        if (format == ExportFormat.CSV) {
+          csv.writeRow(
+              row.getId(),
+              row.getName(),
+              row.getDescription(),
+              row.getPrice(),
+              row.getStock(),
+              row.getActive(),
+              row.getCategoryId(),
+              row.getImagePath(),
+              row.getCreatedAt(),
+              row.getUpdatedAt());
+        } else {
+          writer.write(objectMapper.writeValueAsString(row));
+          writer.write('\n');
+        }
+      }
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,19 @@
+package com.finprodb.backendjava.product;
+
+import java.util.Locale;
+
+public enum ProductImportFormat {
+  CSV,
+  NDJSON;
+
+  public static ProductImportFormat fromContentType(String contentType) {
+    String type = contentType != null ? contentType.toLowerCase(Locale.ROOT) : "";
+    if (type.startsWith("text/csv")) {
+      return CSV;
+    }
+    if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+      return NDJSON;
+    }
+    throw new IllegalArgumentException("Content-Type must be text/csv or application/x-ndjson");
+  }
+}
@@ -0,0 +1,465 @@
+package com.finprodb.backendjava.product;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finprodb.backendjava.category.CategoryProductStats;
+import com.finprodb.backendjava.category.CategoryRepository;
+import com.finprodb.backendjava.common.CsvReader;
+import com.finprodb.backendjava.product.dto.ProductImportResponse;
+import com.finprodb.backendjava.product.dto.ProductRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ProductImportService {
+  private static final int MAX_REPORTED_ERRORS = 100;
+  private static final int PUBLISH_PAGE_SIZE = 500;
+
+  private static final String INSERT =
+      "insert into products (name, description, price, stock, active, category_id, created_at,"
+          + " updated_at) values (?, ?, ?, ?, ?, ?, ?, ?)";
+  // A row that names an id rewrites that product; a missing active column leaves it as it was.
+  private static final String UPDATE =
+      "update products set name = ?, description = ?, price = ?, stock = ?,"
+          + " active = coalesce(?, active), category_id = ?, updated_at = ?"
+          + " where id = ? and deleted_at is null";
+
+  private final ProductRepository productRepository;
+  private final CategoryRepository categoryRepository;
+  private final CategoryProductStats categoryStats;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Validator validator;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher eventPublisher;
+  private final EntityManager entityManager;
+  private final int batchSize;
+
+  private Progress current;
+
+  public ProductImportService(
+      ProductRepository productRepository,
+      CategoryRepository categoryRepository,
+      CategoryProductStats categoryStats,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      Validator validator,
+      ObjectMapper objectMapper,
+      ApplicationEventPublisher eventPublisher,
+      EntityManager entityManager,
+      @Value("${app.import.batch-size:1000}") int batchSize) {
+    this.productRepository = productRepository;
+    this.categoryRepository = categoryRepository;
+    this.categoryStats = categoryStats;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.validator = validator;
+    this.objectMapper = objectMapper;
+    this.eventPublisher = eventPublisher;
+    this.entityManager = entityManager;
+    this.batchSize = Math.max(batchSize, 1);
+  }
+
+  public synchronized ProductImportResponse status() {
+    return current != null ? current.toResponse() : null;
+  }
+
+  public ProductImportResponse importProducts(InputStream body, ProductImportFormat format) {
+    Progress progress = start();
+    try {
+      long baselineId = productRepository.findMaxId();
+      Importer importer = new Importer(progress);
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+      try {
+        if (format == ProductImportFormat.CSV) {
+          importer.readCsv(new CsvReader(reader));
+        } else {
+          importer.readNdjson(reader);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to read import", e);
+      } finally {
+        importer.flush();
+        publishInserted(baselineId);
+      }
+    } finally {
+      progress.finish();
+    }
+    return progress.toResponse();
+  }
+
+  private synchronized Progress start() {
+    if (current != null && current.running) {
+      throw new IllegalArgumentException("Another product import is already running");
+    }
+    current = new Progress();
+    return current;
+  }
+
+  // The rows were written behind Hibernate's back; hand them to the search indexes and caches in
+  // pages, the same way the startup bootstrap reads them. The request's open-in-view session
+  // would otherwise keep every imported product until the response, so each page is detached
+  // once the listeners have copied what they need.
+  // Updated products keep their ids below the baseline; each batch publishes its own.
+  private void publishInserted(long baselineId) {
+    long lastId = baselineId;
+    while (true) {
+      List<Product> page =
+          productRepository.findTop500ByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(lastId);
+      if (page.isEmpty()) {
+        break;
+      }
+      publish(page);
+      lastId = page.get(page.size() - 1).getId();
+    }
+  }
+
+  private void publish(List<Product> page) {
+    eventPublisher.publishEvent(new ProductChangedEvent(page));
+    page.forEach(entityManager::detach);
+  }
+
+  private final class Importer {
+    private final Progress progress;
+    private final Map<Long, Boolean> categories = new HashMap<>();
+    private final List<Row> batch = new ArrayList<>(batchSize);
+    // Ids the current batch updated, published and dropped once it is written.
+    private final Set<Long> updated = new LinkedHashSet<>();
+
+    private Importer(Progress progress) {
+      this.progress = progress;
+    }
+
+    private void readCsv(CsvReader csv) throws IOException {
+      List<String> header = csv.next();
+      if (header == null) {
+        return;
+      }
+      Map<String, Integer> columns = new HashMap<>();
+      for (int i = 0; i < header.size(); i++) {
+        String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+        columns.put(name.replace("_", ""), i);
+      }
+      for (String required : List.of("name", "price", "stock")) {
+        if (!columns.containsKey(required)) {
+          throw new IllegalArgumentException("CSV header must include name, price and stock");
+        }
+      }
+
+      while (true) {
+        List<String> fields;
+        try {
+          fields = csv.next();
+        } catch (IllegalArgumentException e) {
+          // A broken quote leaves no reliable place to resume from.
+          progress.fail(csv.getRecordLine(), e.getMessage());
+          return;
+        }
+        if (fields == null) {
+          return;
+        }
+        long line = csv.getRecordLine();
+        progress.rows++;
+        try {
+          Long id = parse(column(fields, columns, "id"), "id", Long::valueOf);
+          ProductRequest req = new ProductRequest();
+          req.setName(column(fields, columns, "name"));
+          req.setDescription(column(fields, columns, "description"));
+          req.setPrice(parse(column(fields, columns, "price"), "price", BigDecimal::new));
+          req.setStock(parse(column(fields, columns, "stock"), "stock", Integer::valueOf));
+          req.setActive(
+              parse(column(fields, columns, "active"), "active", Importer::parseBoolean));
+          req.setCategoryId(
+              parse(column(fields, columns, "categoryid"), "categoryId", Long::valueOf));
+          accept(line, id, req);
+        } catch (IllegalArgumentException e) {
+          progress.fail(line, e.getMessage());
+        }
+      }
+    }
+
+    private void readNdjson(BufferedReader reader) throws IOException {
+      long line = 0;
+      String text;
+      while ((text = reader.readLine()) != null) {
+        line++;
+        if (text.isBlank()) {
+          continue;
+        }
+        progress.rows++;
+        try {
+          JsonNode row = objectMapper.readTree(text);
+          JsonNode id = row.get("id");
+          if (id != null && !id.isNull() && !id.canConvertToExactIntegral()) {
+            throw new IllegalArgumentException("id is not valid: " + id);
+          }
+          accept(
+              line,
+              id == null || id.isNull() ? null : id.asLong(),
+              objectMapper.treeToValue(row, ProductRequest.class));
+        } catch (JsonProcessingException e) {
+          progress.fail(line, "Invalid JSON: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+          progress.fail(line, e.getMessage());
+        }
+      }
+    }
+
+    private void accept(long line, Long id, ProductRequest req) {
+      Set<ConstraintViolation<ProductRequest>> violations = validator.validate(req);
+      if (!violations.isEmpty()) {
+        ConstraintViolation<ProductRequest> first =
+            violations.stream()
+                .min(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .get();
+        throw new IllegalArgumentException(first.getPropertyPath() + " " + first.getMessage());
+      }
+      if (req.getCategoryId() != null
+          && !categories.computeIfAbsent(
+              req.getCategoryId(),
+              categoryId -> categoryRepository.findByIdAndIsDeletedFalse(categoryId).isPresent())) {
+        throw new IllegalArgumentException("Category not found");
+      }
+
+      batch.add(new Row(line, id, req));
+      if (batch.size() >= batchSize) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      Timestamp now = Timestamp.from(Instant.now());
+      Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+      try {
+        record(batch, transactionTemplate.execute(status -> write(batch, now, utc)));
+      } catch (DataAccessException e) {
+        // One bad row fails the whole batch; replay it row by row so the rest still lands.
+        for (Row row : batch) {
+          try {
+            List<Row> one = List.of(row);
+            record(one, transactionTemplate.execute(status -> write(one, now, utc)));
+          } catch (DataAccessException rowError) {
+            progress.fail(row.line, rowError.getMostSpecificCause().getMessage());
+          }
+        }
+      }
+      batch.clear();
+      publishUpdated();
+    }
+
+    private void publishUpdated() {
+      List<Long> ids = new ArrayList<>(updated);
+      updated.clear();
+      for (int from = 0; from < ids.size(); from += PUBLISH_PAGE_SIZE) {
+        publish(
+            productRepository.findAllById(
+                ids.subList(from, Math.min(from + PUBLISH_PAGE_SIZE, ids.size()))));
+      }
+    }
+
+    private void record(List<Row> rows, Set<Row> missing) {
+      for (Row row : rows) {
+        if (missing.contains(row)) {
+          progress.fail(row.line, "Product not found: " + row.id);
+        } else {
+          progress.imported++;
+          if (row.id != null) {
+            updated.add(row.id);
+          }
+        }
+      }
+    }
+
+    private static String column(List<String> fields, Map<String, Integer> columns, String name) {
+      Integer index = columns.get(name);
+      if (index == null || index >= fields.size()) {
+        return null;
+      }
+      String value = fields.get(index);
+      return value.isBlank() ? null : value;
+    }
+
+    private static <T> T parse(String value, String field, Function<String, T> parser) {
+      if (value == null) {
+        return null;
+      }
+      try {
+        return parser.apply(value.trim());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(field + " is not valid: " + value);
+      }
+    }
+
+    private static Boolean parseBoolean(String value) {
+      return switch (value.toLowerCase(Locale.ROOT)) {
+        case "true", "1", "yes" -> Boolean.TRUE;
+        case "false", "0", "no" -> Boolean.FALSE;
+        default -> throw new IllegalArgumentException(value);
+      };
+    }
+  }
+
+  // Inserts the rows without an id and rewrites the live products the others name, then
+  // recounts the stats of every category a product entered or left. Returns the rows whose
+  // product does not exist or has been deleted; nothing is written for those.
+  private Set<Row> write(List<Row> rows, Timestamp now, Calendar utc) {
+    List<Row> inserts = new ArrayList<>(rows.size());
+    List<Row> updates = new ArrayList<>();
+    Set<Long> categoryIds = new HashSet<>();
+    for (Row row : rows) {
+      (row.id == null ? inserts : updates).add(row);
+      categoryIds.add(row.request.getCategoryId());
+    }
+    Set<Row> missing = new HashSet<>();
+    if (!updates.isEmpty()) {
+      Map<Long, Long> liveCategories = new HashMap<>();
+      jdbcTemplate.query(
+          "select id, category_id from products where deleted_at is null and id in ("
+              + String.join(", ", Collections.nCopies(updates.size(), "?"))
+              + ")",
+          rs -> {
+            liveCategories.put(rs.getLong(1), rs.getObject(2, Long.class));
+          },
+          updates.stream().map(row -> row.id).toArray());
+      for (Row row : updates) {
+        if (!liveCategories.containsKey(row.id)) {
+          missing.add(row);
+        }
+      }
+      updates.removeAll(missing);
+      categoryIds.addAll(liveCategories.values());
+    }
+    if (!inserts.isEmpty()) {
+      jdbcTemplate.batchUpdate(
+          INSERT, inserts, inserts.size(), (ps, row) -> bindInsert(ps, row, now, utc));
+    }
+    if (!updates.isEmpty()) {
+      jdbcTemplate.batchUpdate(
+          UPDATE, updates, updates.size(), (ps, row) -> bindUpdate(ps, row, now, utc));
+    }
+    categoryStats.refresh(categoryIds);
+    return missing;
+  }
+
+  private static void bindInsert(PreparedStatement ps, Row row, Timestamp now, Calendar utc)
+      throws SQLException {
+    ProductRequest req = row.request;
+    ps.setString(1, req.getName());
+    ps.setString(2, req.getDescription());
+    ps.setBigDecimal(3, req.getPrice());
+    ps.setInt(4, req.getStock());
+    ps.setBoolean(5, req.getActive() == null || req.getActive());
+    setCategory(ps, 6, req);
+    ps.setTimestamp(7, now, utc);
+    ps.setTimestamp(8, now, utc);
+  }
+
+  private static void bindUpdate(PreparedStatement ps, Row row, Timestamp now, Calendar utc)
+      throws SQLException {
+    ProductRequest req = row.request;
+    ps.setString(1, req.getName());
+    ps.setString(2, req.getDescription());
+    ps.setBigDecimal(3, req.getPrice());
+    ps.setInt(4, req.getStock());
+    if (req.getActive() != null) {
+      ps.setBoolean(5, req.getActive());
+    } else {
+      ps.setNull(5, Types.BOOLEAN);
+    }
+    setCategory(ps, 6, req);
+    ps.setTimestamp(7, now, utc);
+    ps.setLong(8, row.id);
+  }
+
+  private static void setCategory(PreparedStatement ps, int index, ProductRequest req)
+      throws SQLException {
+    if (req.getCategoryId() != null) {
+      ps.setLong(index, req.getCategoryId());
+    } else {
+      ps.setNull(index, Types.BIGINT);
+    }
+  }
+
+  private static final class Row {
+    private final long line;
+    private final Long id;
+    private final ProductRequest request;
+
+    private Row(long line, Long id, ProductRequest request) {
+      this.line = line;
+      this.id = id;
+      this.request = request;
+    }
+  }
+
+  private static final class Progress {
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final List<ProductImportResponse.RowError> errors =
+        Collections.synchronizedList(new ArrayList<>());
+
+    private volatile boolean running = true;
+    private volatile long rows;
+    private volatile long imported;
+    private volatile long failed;
+    private volatile long durationMs;
+
+    private void fail(long line, String message) {
+      failed++;
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(new ProductImportResponse.RowError(line, message));
+      }
+    }
+
+    private void finish() {
+      durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+      running = false;
+    }
+
+    private ProductImportResponse toResponse() {
+      List<ProductImportResponse.RowError> reported;
+      synchronized (errors) {
+        reported = List.copyOf(errors);
+      }
+      long elapsed = running ? (System.nanoTime() - startNanos) / 1_000_000 : durationMs;
+      return new ProductImportResponse(
+          running, rows, imported, failed, reported, failed > reported.size(), startedAt, elapsed);
+    }
+  }
+}
@@ -0,0 +1,6 @@
+package com.finprodb.backendjava.product;
+
+public enum ProductListSort {
+  DEFAULT,
+  BEST_SELLING
+}
@@ -0,0 +1,83 @@
+package com.finprodb.backendjava.product;
+
+import com.finprodb.backendjava.category.CategoryChangedEvent;
+import com.finprodb.backendjava.common.BoundedCache;
+import com.finprodb.backendjava.order.OrderPaidEvent;
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import java.util.HashSet;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class ProductListingCache extends BoundedCache<String, Page<ProductResponse>> {
+  public ProductListingCache(@Value("${app.cache.products.max-bytes:33554432}") long maxBytes) {
+    super("products", maxBytes, ProductListingCache::estimateBytes);
+  }
+
+  private static final String BEST_SELLING = "|" + ProductListSort.BEST_SELLING;
+
+  public static String key(
+      int page, int size, String q, Long categoryId, boolean fuzzy, ProductListSort sort) {
+    return page
+        + "|"
+        + size
+        + "|"
+        + (q != null ? q : "")
+        + "|"
+        + (categoryId != null ? categoryId : "")
+        + (fuzzy ? "|fuzzy" : "")
+        + (sort != ProductListSort.DEFAULT ? "|" + sort : "");
+  }
+
+  // Stock and image changes (every paid order) only touch the pages showing those products.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onProductChanged(ProductChangedEvent event) {
+    switch (event.getScope()) {
+      case ALL -> invalidateAll();
+      case FIELDS -> {
+        Set<Long> ids = new HashSet<>();
+        event.getProducts().forEach(product -> ids.add(product.getId()));
+        invalidateIf(
+            (key, page) -> page.getContent().stream().anyMatch(p -> ids.contains(p.getId())));
+      }
+      case RANKING -> invalidateIf((key, page) -> key.endsWith(BEST_SELLING));
+    }
+  }
+
+  // Runs after ProductSalesService has moved the ranking.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOrderPaid(OrderPaidEvent event) {
+    invalidateIf((key, page) -> key.endsWith(BEST_SELLING));
+  }
+
+  // A category filter covers its subtree, so moving categories around changes cached listings.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCategoryChanged(CategoryChangedEvent event) {
+    if (event.isTreeChanged()) {
+      invalidateAll();
+    }
+  }
+
+  private static long estimateBytes(Page<ProductResponse> page) {
+    long bytes = 128;
+    for (ProductResponse p : page.getContent()) {
+      bytes +=
+          192
+              + 2L
+                  * (length(p.getName())
+                      + length(p.getDescription())
+                      + length(p.getImagePath())
+                      + length(p.getImageThumbPath())
+                      + length(p.getImageCardPath())
+                      + length(p.getImageFullPath()));
+    }
+    return bytes;
+  }
+
+  private static int length(String s) {
+    return s != null ? s.length() : 0;
+  }
+}
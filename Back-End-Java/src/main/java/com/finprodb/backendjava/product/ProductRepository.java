@@ -1,23 +1,187 @@
 package com.finprodb.backendjava.product;
 
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-  Page<Product> findByActiveTrueAndDeletedAtIsNull(Pageable pageable);
+  // Listing rows go straight into the DTO: no managed entities and no category proxy.
+  String LISTING =
+      "select new com.finprodb.backendjava.product.dto.ProductResponse("
+          + "p.id, p.name, p.description, p.price, p.stock, p.active, p.imagePath,"
+          + " p.imageThumbPath, p.imageCardPath, p.imageFullPath, p.category.id, p.createdAt,"
+          + " p.updatedAt)"
+          + " from Product p";
 
-  Page<Product> findByActiveTrueAndDeletedAtIsNullAndNameContainingIgnoreCase(
-      String name, Pageable pageable);
+  String ACTIVE = " where p.active = true and p.deletedAt is null";
 
-  Page<Product> findByActiveTrueAndDeletedAtIsNullAndCategory_Id(Long categoryId, Pageable pageable);
+  String NAME_LIKE =
+      " and lower(p.name) like lower(concat('%', :#{escape(#q)}, '%')) escape :#{escapeCharacter()}";
 
-  Page<Product> findByActiveTrueAndDeletedAtIsNullAndCategory_IdAndNameContainingIgnoreCase(
-      Long categoryId, String name, Pageable pageable);
+  @Query(value = LISTING + ACTIVE, countQuery = "select count(p) from Product p" + ACTIVE)
+  Page<ProductResponse> findActiveListing(Pageable pageable);
+
+  // Everything filed under a category path, its own products included: one range on
+  // idx_categories_path joined to the live products of each category found.
+  String UNDER_PATH = " and p.category.path like concat(:path, '%')";
+
+  @Query(
+      value = LISTING + ACTIVE + UNDER_PATH,
+      countQuery = "select count(p) from Product p" + ACTIVE + UNDER_PATH)
+  Page<ProductResponse> findActiveListingUnderPath(
+      @Param("path") String path, Pageable pageable);
+
+  @Query(
+      value = LISTING + ACTIVE + NAME_LIKE,
+      countQuery = "select count(p) from Product p" + ACTIVE + NAME_LIKE)
+  Page<ProductResponse> findActiveListingByName(@Param("q") String q, Pageable pageable);
+
+  @Query(
+      value = LISTING + ACTIVE + UNDER_PATH + NAME_LIKE,
+      countQuery = "select count(p) from Product p" + ACTIVE + UNDER_PATH + NAME_LIKE)
+  Page<ProductResponse> findActiveListingUnderPathAndName(
+      @Param("path") String path, @Param("q") String q, Pageable pageable);
+
+  // Active products outside the best sellers, appended after them by the best-selling listing.
+  String NOT_IN = " and p.id not in :excluded";
+
+  @Query(
+      value = LISTING + ACTIVE + NOT_IN,
+      countQuery = "select count(p) from Product p" + ACTIVE + NOT_IN)
+  Page<ProductResponse> findActiveListingNotIn(
+      @Param("excluded") Collection<Long> excluded, Pageable pageable);
+
+  @Query(
+      value = LISTING + ACTIVE + UNDER_PATH + NOT_IN,
+      countQuery = "select count(p) from Product p" + ACTIVE + UNDER_PATH + NOT_IN)
+  Page<ProductResponse> findActiveListingUnderPathNotIn(
+      @Param("path") String path,
+      @Param("excluded") Collection<Long> excluded,
+      Pageable pageable);
+
+  @Query(LISTING + " where p.id in :ids")
+  List<ProductResponse> findListingByIdIn(@Param("ids") Collection<Long> ids);
+
+  @Query(LISTING + ACTIVE + " and p.id in :ids")
+  List<ProductResponse> findActiveListingByIdIn(@Param("ids") Collection<Long> ids);
+
+  // Facet counts straight from the table, while the facet index is still being built.
+  String FACET_GROUPS =
+      "select p.category.id, p.price, case when p.stock > 0 then true else false end, count(p)"
+          + " from Product p";
+
+  String BY_FACET_GROUP =
+      " group by p.category.id, p.price, case when p.stock > 0 then true else false end";
+
+  @Query(FACET_GROUPS + ACTIVE + BY_FACET_GROUP)
+  List<Object[]> countActiveFacetGroups();
+
+  @Query(FACET_GROUPS + ACTIVE + NAME_LIKE + BY_FACET_GROUP)
+  List<Object[]> countActiveFacetGroupsByName(@Param("q") String q);
 
   Page<Product> findByDeletedAtIsNull(Pageable pageable);
 
   Optional<Product> findByIdAndDeletedAtIsNull(Long id);
+
+  List<Product> findTop500ByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(Long id);
+
+  // Keyset windows for the scroll listing, each with and without a category subtree.
+  String CREATED_BEFORE =
+      " and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))"
+          + " order by p.createdAt desc, p.id desc";
+
+  String PRICED_ABOVE =
+      " and (p.price > :price or (p.price = :price and p.id > :id))"
+          + " order by p.price asc, p.id asc";
+
+  String PRICED_BELOW =
+      " and (p.price < :price or (p.price = :price and p.id < :id))"
+          + " order by p.price desc, p.id desc";
+
+  @Query(LISTING + ACTIVE + CREATED_BEFORE)
+  List<ProductResponse> findActiveCreatedBefore(
+      @Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+
+  @Query(LISTING + ACTIVE + UNDER_PATH + CREATED_BEFORE)
+  List<ProductResponse> findActiveUnderPathCreatedBefore(
+      @Param("path") String path,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") Long id,
+      Pageable pageable);
+
+  @Query(LISTING + ACTIVE + PRICED_ABOVE)
+  List<ProductResponse> findActivePricedAbove(
+      @Param("price") BigDecimal price, @Param("id") Long id, Pageable pageable);
+
+  @Query(LISTING + ACTIVE + UNDER_PATH + PRICED_ABOVE)
+  List<ProductResponse> findActiveUnderPathPricedAbove(
+      @Param("path") String path,
+      @Param("price") BigDecimal price,
+      @Param("id") Long id,
+      Pageable pageable);
+
+  @Query(LISTING + ACTIVE + PRICED_BELOW)
+  List<ProductResponse> findActivePricedBelow(
+      @Param("price") BigDecimal price, @Param("id") Long id, Pageable pageable);
+
+  @Query(LISTING + ACTIVE + UNDER_PATH + PRICED_BELOW)
+  List<ProductResponse> findActiveUnderPathPricedBelow(
+      @Param("path") String path,
+      @Param("price") BigDecimal price,
+      @Param("id") Long id,
+      Pageable pageable);
+
+  // Only applies while the product still shows the image the variants were made from.
+  @Transactional
+  @Modifying
+  @Query(
+      "update Product p set p.imageThumbPath = :thumb, p.imageCardPath = :card,"
+          + " p.imageFullPath = :full where p.id = :id and p.imagePath = :imagePath")
+  int updateImageVariants(
+      @Param("id") Long id,
+      @Param("imagePath") String imagePath,
+      @Param("thumb") String thumb,
+      @Param("card") String card,
+      @Param("full") String full);
+
+  // Compare-and-set on image_path, so two uploads racing for one product cannot both believe
+  // they replaced the same previous image. Variants are cleared until the new ones are rendered.
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "update Product p set p.imagePath = :imagePath, p.imageThumbPath = null,"
+          + " p.imageCardPath = null, p.imageFullPath = null, p.updatedAt = :now"
+          + " where p.id = :id and p.deletedAt is null and (p.imagePath = :previous"
+          + " or (p.imagePath is null and :previous is null))")
+  int replaceImage(
+      @Param("id") Long id,
+      @Param("previous") String previous,
+      @Param("imagePath") String imagePath,
+      @Param("now") Instant now);
+
+  @Query("select coalesce(max(p.id), 0) from Product p")
+  long findMaxId();
+
+  // Forward-only read for exports; the caller must hold a transaction and close the stream.
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("select p from Product p where p.deletedAt is null order by p.id")
+  Stream<Product> streamForExport();
 }
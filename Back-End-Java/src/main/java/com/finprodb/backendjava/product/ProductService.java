@@ -1,54 +1,308 @@
 package com.finprodb.backendjava.product;
 
 import com.finprodb.backendjava.category.Category;
+import com.finprodb.backendjava.category.CategoryProductStats;
 import com.finprodb.backendjava.category.CategoryRepository;
+import com.finprodb.backendjava.category.CategoryTree;
+import com.finprodb.backendjava.product.dto.ProductCursorResponse;
+import com.finprodb.backendjava.product.dto.ProductFacetsResponse;
 import com.finprodb.backendjava.product.dto.ProductRequest;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import com.finprodb.backendjava.product.sales.BestSellerRanking;
+import com.finprodb.backendjava.product.search.ProductFacetIndex;
+import com.finprodb.backendjava.product.search.ProductSearchIndex;
+import com.finprodb.backendjava.product.search.ProductTrigramIndex;
+import com.finprodb.backendjava.upload.BlobStore;
+import com.finprodb.backendjava.upload.ImageVariant;
+import com.finprodb.backendjava.upload.ImageVariantPipeline;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class ProductService {
   private final ProductRepository productRepository;
   private final CategoryRepository categoryRepository;
+  private final CategoryTree categoryTree;
+  private final CategoryProductStats categoryStats;
+  private final ProductSearchIndex searchIndex;
+  private final ProductFacetIndex facetIndex;
+  private final ProductTrigramIndex trigramIndex;
+  private final BestSellerRanking bestSellers;
+  private final ProductListingCache listingCache;
+  private final BlobStore blobStore;
+  private final ImageVariantPipeline imageVariants;
+  private final ApplicationEventPublisher eventPublisher;
 
-  public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository) {
+  public ProductService(
+      ProductRepository productRepository,
+      CategoryRepository categoryRepository,
+      CategoryTree categoryTree,
+      CategoryProductStats categoryStats,
+      ProductSearchIndex searchIndex,
+      ProductFacetIndex facetIndex,
+      ProductTrigramIndex trigramIndex,
+      BestSellerRanking bestSellers,
+      ProductListingCache listingCache,
+      BlobStore blobStore,
+      ImageVariantPipeline imageVariants,
+      ApplicationEventPublisher eventPublisher) {
     this.productRepository = productRepository;
     this.categoryRepository = categoryRepository;
+    this.categoryTree = categoryTree;
+    this.categoryStats = categoryStats;
+    this.searchIndex = searchIndex;
+    this.facetIndex = facetIndex;
+    this.trigramIndex = trigramIndex;
+    this.bestSellers = bestSellers;
+    this.listingCache = listingCache;
+    this.blobStore = blobStore;
+    this.imageVariants = imageVariants;
+    this.eventPublisher = eventPublisher;
   }
 
-  public Page<Product> listActive(int page, int size) {
-    return listActive(page, size, null, null);
+  public Page<ProductResponse> listActive(int page, int size) {
+    return listActive(page, size, null, null, false, ProductListSort.DEFAULT);
   }
 
-  public Page<Product> listActive(int page, int size, String q, Long categoryId) {
+  public Page<ProductResponse> listActive(
+      int page, int size, String q, Long categoryId, boolean fuzzy, ProductListSort sort) {
     Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100));
-    String query = q != null ? q.trim() : null;
-    if (query != null && query.isBlank()) {
-      query = null;
-    }
+    String query = normalizeQuery(q);
+    boolean typoTolerant = fuzzy && query != null;
+    return listingCache.getOrLoad(
+        ProductListingCache.key(
+            pageable.getPageNumber(),
+            pageable.getPageSize(),
+            query,
+            categoryId,
+            typoTolerant,
+            sort),
+        () ->
+            sort == ProductListSort.BEST_SELLING
+                ? loadBestSelling(pageable, query, categoryId, typoTolerant)
+                : loadActive(pageable, query, categoryId, typoTolerant));
+  }
 
-    if (categoryId != null && query != null) {
-      return productRepository
-          .findByActiveTrueAndDeletedAtIsNullAndCategory_IdAndNameContainingIgnoreCase(
-              categoryId, query, pageable);
+  // Until the indexes are built at startup, the counts come from the table, and a query
+  // matches names only, as the listing's fallback does.
+  public ProductFacetsResponse facets(String q, Long categoryId) {
+    String query = normalizeQuery(q);
+    Set<Long> subtree = categoryId != null ? categoryTree.subtreeIds(categoryId) : null;
+    if (!facetIndex.isReady() || (query != null && !searchIndex.isReady())) {
+      return facetIndex.facetsOf(
+          query != null
+              ? productRepository.countActiveFacetGroupsByName(query)
+              : productRepository.countActiveFacetGroups(),
+          subtree);
     }
+    long[] matches = query != null ? searchIndex.search(query, null) : null;
+    return facetIndex.facets(matches, subtree);
+  }
+
+  private static String normalizeQuery(String q) {
+    String query = q != null ? q.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT) : null;
+    return query != null && !query.isBlank() ? query : null;
+  }
+
+  // A category filter covers the category's whole subtree.
+  private Page<ProductResponse> loadActive(
+      Pageable pageable, String query, Long categoryId, boolean fuzzy) {
+    String path = null;
+    Set<Long> categoryIds = null;
     if (categoryId != null) {
-      return productRepository.findByActiveTrueAndDeletedAtIsNullAndCategory_Id(categoryId, pageable);
+      path = categoryTree.path(categoryId).orElse(null);
+      if (path == null) {
+        return Page.empty(pageable);
+      }
+      categoryIds = categoryTree.subtreeIds(categoryId);
+    }
+    if (fuzzy && trigramIndex.isReady()) {
+      return hydrate(trigramIndex.search(query, categoryIds), pageable);
+    }
+    if (query != null && searchIndex.isReady()) {
+      return hydrate(searchIndex.search(query, categoryIds), pageable);
+    }
+    if (path != null && query != null) {
+      return productRepository.findActiveListingUnderPathAndName(path, query, pageable);
+    }
+    if (path != null) {
+      return productRepository.findActiveListingUnderPath(path, pageable);
     }
     if (query != null) {
-      return productRepository.findByActiveTrueAndDeletedAtIsNullAndNameContainingIgnoreCase(query, pageable);
+      return productRepository.findActiveListingByName(query, pageable);
+    }
+    return productRepository.findActiveListing(pageable);
+  }
+
+  // Best sellers first, then every other matching product, so the listing covers as many
+  // products as the default order: search results keep their relevance order, a plain listing
+  // continues newest first.
+  private Page<ProductResponse> loadBestSelling(
+      Pageable pageable, String query, Long categoryId, boolean fuzzy) {
+    String path = null;
+    Set<Long> categoryIds = null;
+    if (categoryId != null) {
+      path = categoryTree.path(categoryId).orElse(null);
+      if (path == null) {
+        return Page.empty(pageable);
+      }
+      categoryIds = categoryTree.subtreeIds(categoryId);
+    }
+    long[] ranked = bestSellers.ranked(categoryIds);
+    if (query == null) {
+      return hydrateThenNewest(ranked, path, pageable);
+    }
+    // Before the search indexes are built there is nothing to rank; list what the database finds.
+    if (!(fuzzy ? trigramIndex.isReady() : searchIndex.isReady())) {
+      return loadActive(pageable, query, categoryId, false);
+    }
+    long[] matches =
+        fuzzy ? trigramIndex.search(query, categoryIds) : searchIndex.search(query, categoryIds);
+    long[] sorted = matches.clone();
+    Arrays.sort(sorted);
+    long[] ordered = new long[matches.length];
+    int n = 0;
+    for (long id : ranked) {
+      if (Arrays.binarySearch(sorted, id) >= 0) {
+        ordered[n++] = id;
+      }
+    }
+    long[] best = Arrays.copyOf(ordered, n);
+    Arrays.sort(best);
+    for (long id : matches) {
+      if (Arrays.binarySearch(best, id) < 0) {
+        ordered[n++] = id;
+      }
     }
-    return productRepository.findByActiveTrueAndDeletedAtIsNull(pageable);
+    return hydrate(ordered, pageable);
+  }
+
+  // Pages through the ranked ids and then the remaining active products as one sequence. The
+  // remainder of a page may straddle two pages of the newest-first query.
+  private Page<ProductResponse> hydrateThenNewest(long[] ranked, String path, Pageable pageable) {
+    int size = pageable.getPageSize();
+    long offset = pageable.getOffset();
+    List<ProductResponse> content = new ArrayList<>(hydrate(ranked, pageable).getContent());
+    int wanted = size - (int) Math.max(0, Math.min(ranked.length - offset, size));
+
+    List<Long> excluded = Arrays.stream(ranked).boxed().toList();
+    long restOffset = Math.max(0, offset - ranked.length);
+    int restPage = (int) (restOffset / size);
+    int skip = (int) (restOffset % size);
+    Page<ProductResponse> rest = newestExcluding(path, excluded, restPage, size);
+    List<ProductResponse> window = new ArrayList<>(rest.getContent());
+    if (skip + wanted > size && rest.hasNext()) {
+      window.addAll(newestExcluding(path, excluded, restPage + 1, size).getContent());
+    }
+    content.addAll(
+        window.subList(Math.min(skip, window.size()), Math.min(skip + wanted, window.size())));
+    return new PageImpl<>(content, pageable, ranked.length + rest.getTotalElements());
+  }
+
+  private Page<ProductResponse> newestExcluding(
+      String path, List<Long> excluded, int page, int size) {
+    Pageable pageable =
+        PageRequest.of(
+            page, size, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+    if (excluded.isEmpty()) {
+      return path != null
+          ? productRepository.findActiveListingUnderPath(path, pageable)
+          : productRepository.findActiveListing(pageable);
+    }
+    return path != null
+        ? productRepository.findActiveListingUnderPathNotIn(path, excluded, pageable)
+        : productRepository.findActiveListingNotIn(excluded, pageable);
+  }
+
+  // Loads one page of already-ranked ids through the listing projection, keeping their order.
+  private Page<ProductResponse> hydrate(long[] matches, Pageable pageable) {
+    int from = (int) Math.min(pageable.getOffset(), matches.length);
+    int to = Math.min(from + pageable.getPageSize(), matches.length);
+
+    List<Long> pageIds = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      pageIds.add(matches[i]);
+    }
+    if (pageIds.isEmpty()) {
+      return new PageImpl<>(List.of(), pageable, matches.length);
+    }
+
+    Map<Long, ProductResponse> byId =
+        productRepository.findListingByIdIn(pageIds).stream()
+            .collect(Collectors.toMap(ProductResponse::getId, Function.identity()));
+    List<ProductResponse> content = new ArrayList<>(pageIds.size());
+    for (Long id : pageIds) {
+      ProductResponse product = byId.get(id);
+      if (product != null) {
+        content.add(product);
+      }
+    }
+    return new PageImpl<>(content, pageable, matches.length);
+  }
+
+  public ProductCursorResponse scrollActive(
+      int size, String after, ProductCursorSort sort, Long categoryId) {
+    int limit = Math.min(Math.max(size, 1), 100);
+    ProductCursor cursor =
+        after != null && !after.isBlank()
+            ? ProductCursor.decode(after.trim(), sort)
+            : ProductCursor.first(sort);
+    Pageable window = PageRequest.of(0, limit + 1);
+
+    // Like the paged listing, a category filter covers the category's whole subtree.
+    String path = null;
+    if (categoryId != null) {
+      path = categoryTree.path(categoryId).orElse(null);
+      if (path == null) {
+        return new ProductCursorResponse(List.of(), null);
+      }
+    }
+    List<ProductResponse> rows;
+    if (path != null) {
+      rows =
+          switch (sort) {
+            case NEWEST -> productRepository.findActiveUnderPathCreatedBefore(
+                path, cursor.getCreatedAt(), cursor.getId(), window);
+            case PRICE_ASC -> productRepository.findActiveUnderPathPricedAbove(
+                path, cursor.getPrice(), cursor.getId(), window);
+            case PRICE_DESC -> productRepository.findActiveUnderPathPricedBelow(
+                path, cursor.getPrice(), cursor.getId(), window);
+          };
+    } else {
+      rows =
+          switch (sort) {
+            case NEWEST -> productRepository.findActiveCreatedBefore(
+                cursor.getCreatedAt(), cursor.getId(), window);
+            case PRICE_ASC -> productRepository.findActivePricedAbove(
+                cursor.getPrice(), cursor.getId(), window);
+            case PRICE_DESC -> productRepository.findActivePricedBelow(
+                cursor.getPrice(), cursor.getId(), window);
+          };
+    }
+
+    boolean hasMore = rows.size() > limit;
+    List<ProductResponse> content = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    String nextCursor =
+        hasMore ? ProductCursor.after(sort, content.get(content.size() - 1)).encode() : null;
+    return new ProductCursorResponse(content, nextCursor);
   }
 
   public Page<Product> listAll(int page, int size) {
@@ -64,6 +318,7 @@ public class ProductService {
     return productRepository.findByIdAndDeletedAtIsNull(id);
   }
 
+  @Transactional
   public Product create(ProductRequest req) {
     Product product = new Product();
     product.setName(req.getName());
@@ -83,14 +338,18 @@ public class ProductService {
     } else {
       product.setCategory(null);
     }
-    return productRepository.save(product);
+    Product saved = productRepository.save(product);
+    categoryStats.refresh(Collections.singleton(categoryIdOf(saved)));
+    return publishChanged(saved);
   }
 
+  @Transactional
   public Product update(Long id, ProductRequest req) {
     Product product =
         productRepository
             .findByIdAndDeletedAtIsNull(id)
             .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+    Long previousCategoryId = categoryIdOf(product);
     product.setName(req.getName());
     product.setDescription(req.getDescription());
     product.setPrice(req.getPrice());
@@ -108,16 +367,22 @@ public class ProductService {
     } else {
       product.setCategory(null);
     }
-    return productRepository.save(product);
+    Product saved = productRepository.save(product);
+    categoryStats.refresh(Arrays.asList(previousCategoryId, categoryIdOf(saved)));
+    return publishChanged(saved);
   }
 
+  @Transactional
   public void delete(Long id) {
     Product product =
         productRepository
             .findByIdAndDeletedAtIsNull(id)
             .orElseThrow(() -> new IllegalArgumentException("Product not found"));
     product.setDeletedAt(Instant.now());
-    productRepository.save(product);
+    publishChanged(productRepository.save(product));
+    categoryStats.refresh(Collections.singleton(categoryIdOf(product)));
+    // The row keeps its image_path, but nothing serves it any more.
+    blobStore.release(product.getImagePath());
   }
 
   public Product uploadImage(Long productId, MultipartFile file) {
@@ -135,27 +400,54 @@ public class ProductService {
             .findByIdAndDeletedAtIsNull(productId)
             .orElseThrow(() -> new IllegalArgumentException("Product not found"));
 
-    String original = file.getOriginalFilename();
-    String ext = "";
-    if (original != null) {
-      int dot = original.lastIndexOf('.');
-      if (dot >= 0 && dot < original.length() - 1) {
-        ext = original.substring(dot);
+    String imagePath = blobStore.store(file);
+    String previous = product.getImagePath();
+    try {
+      while (productRepository.replaceImage(productId, previous, imagePath, Instant.now()) == 0) {
+        // Another upload got in first; swap against the image it saved.
+        previous =
+            productRepository
+                .findByIdAndDeletedAtIsNull(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found"))
+                .getImagePath();
       }
+    } catch (RuntimeException e) {
+      blobStore.release(imagePath);
+      throw e;
     }
+    blobStore.release(previous);
+    Product saved = publishChanged(productRepository.findById(productId).orElseThrow());
+    imageVariants.submit(imagePath, variants -> applyImageVariants(productId, imagePath, variants));
+    return saved;
+  }
 
-    Path dir = Paths.get("uploads", "products");
-    String filename = "product-" + productId + "-" + Instant.now().toEpochMilli() + ext;
-    Path target = dir.resolve(filename);
-
-    try {
-      Files.createDirectories(dir);
-      file.transferTo(target);
-    } catch (IOException e) {
-      throw new IllegalStateException("Failed to store file", e);
+  private void applyImageVariants(
+      Long productId, String imagePath, Map<ImageVariant, String> variants) {
+    int updated =
+        productRepository.updateImageVariants(
+            productId,
+            imagePath,
+            variants.get(ImageVariant.THUMB),
+            variants.get(ImageVariant.CARD),
+            variants.get(ImageVariant.FULL));
+    // Only the image paths moved, so listings without this product stay cached.
+    if (updated > 0) {
+      productRepository
+          .findById(productId)
+          .ifPresent(
+              product ->
+                  eventPublisher.publishEvent(
+                      new ProductChangedEvent(
+                          List.of(product), ProductChangedEvent.Scope.FIELDS)));
     }
+  }
+
+  private static Long categoryIdOf(Product product) {
+    return product.getCategory() != null ? product.getCategory().getId() : null;
+  }
 
-    product.setImagePath("/uploads/products/" + filename);
-    return productRepository.save(product);
+  private Product publishChanged(Product product) {
+    eventPublisher.publishEvent(ProductChangedEvent.of(product));
+    return product;
   }
 }
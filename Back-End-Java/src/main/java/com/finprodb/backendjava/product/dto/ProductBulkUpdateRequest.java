@@ -0,0 +1,71 @@
+package com.finprodb.backendjava.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ProductBulkUpdateRequest {
+  public static final int MAX_ITEMS = 10000;
+
+  @NotEmpty
+  @Size(max = MAX_ITEMS)
+  @Valid
+  private List<Item> items;
+
+  public List<Item> getItems() {
+    return items;
+  }
+
+  public void setItems(List<Item> items) {
+    this.items = items;
+  }
+
+  public static class Item {
+    @NotNull
+    private Long id;
+
+    @PositiveOrZero
+    private BigDecimal price;
+
+    @PositiveOrZero
+    private Integer stock;
+
+    private Boolean active;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public BigDecimal getPrice() {
+      return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+      this.price = price;
+    }
+
+    public Integer getStock() {
+      return stock;
+    }
+
+    public void setStock(Integer stock) {
+      this.stock = stock;
+    }
+
+    public Boolean getActive() {
+      return active;
+    }
+
+    public void setActive(Boolean active) {
+      this.active = active;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.finprodb.backendjava.product.dto;
+
+import java.util.List;
+
+public class ProductBulkUpdateResponse {
+  private int requested;
+  private int updated;
+  private List<Long> notFound;
+
+  public ProductBulkUpdateResponse(int requested, int updated, List<Long> notFound) {
+    this.requested = requested;
+    this.updated = updated;
+    this.notFound = notFound;
+  }
+
+  public int getRequested() {
+    return requested;
+  }
+
+  public int getUpdated() {
+    return updated;
+  }
+
+  public List<Long> getNotFound() {
+    return notFound;
+  }
+}
@@ -0,0 +1,21 @@
+package com.finprodb.backendjava.product.dto;
+
+import java.util.List;
+
+public class ProductCursorResponse {
+  private List<ProductResponse> items;
+  private String nextCursor;
+
+  public ProductCursorResponse(List<ProductResponse> items, String nextCursor) {
+    this.items = items;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<ProductResponse> getItems() {
+    return items;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
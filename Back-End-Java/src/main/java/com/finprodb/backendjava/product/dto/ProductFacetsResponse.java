@@ -0,0 +1,77 @@
+package com.finprodb.backendjava.product.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ProductFacetsResponse {
+  private long total;
+  private long inStock;
+  private List<CategoryCount> categories;
+  private List<PriceBand> priceBands;
+
+  public ProductFacetsResponse(
+      long total, long inStock, List<CategoryCount> categories, List<PriceBand> priceBands) {
+    this.total = total;
+    this.inStock = inStock;
+    this.categories = categories;
+    this.priceBands = priceBands;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getInStock() {
+    return inStock;
+  }
+
+  public List<CategoryCount> getCategories() {
+    return categories;
+  }
+
+  public List<PriceBand> getPriceBands() {
+    return priceBands;
+  }
+
+  public static class CategoryCount {
+    private Long categoryId;
+    private long count;
+
+    public CategoryCount(Long categoryId, long count) {
+      this.categoryId = categoryId;
+      this.count = count;
+    }
+
+    public Long getCategoryId() {
+      return categoryId;
+    }
+
+    public long getCount() {
+      return count;
+    }
+  }
+
+  public static class PriceBand {
+    private BigDecimal min;
+    private BigDecimal max;
+    private long count;
+
+    public PriceBand(BigDecimal min, BigDecimal max, long count) {
+      this.min = min;
+      this.max = max;
+      this.count = count;
+    }
+
+    public BigDecimal getMin() {
+      return min;
+    }
+
+    public BigDecimal getMax() {
+      return max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.finprodb.backendjava.product.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public class ProductImportResponse {
+  private boolean running;
+  private long rows;
+  private long imported;
+  private long failed;
+  private List<RowError> errors;
+  private boolean errorsTruncated;
+  private Instant startedAt;
+  private long durationMs;
+
+  public ProductImportResponse(
+      boolean running,
+      long rows,
+      long imported,
+      long failed,
+      List<RowError> errors,
+      boolean errorsTruncated,
+      Instant startedAt,
+      long durationMs) {
+    this.running = running;
+    this.rows = rows;
+    this.imported = imported;
+    this.failed = failed;
+    this.errors = errors;
+    this.errorsTruncated = errorsTruncated;
+    this.startedAt = startedAt;
+    this.durationMs = durationMs;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getImported() {
+    return imported;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+
+  public List<RowError> getErrors() {
+    return errors;
+  }
+
+  public boolean isErrorsTruncated() {
+    return errorsTruncated;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  public static class RowError {
+    private long line;
+    private String message;
+
+    public RowError(long line, String message) {
+      this.line = line;
+      this.message = message;
+    }
+
+    public long getLine() {
+      return line;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -12,10 +12,44 @@ public class ProductResponse {
   private Integer stock;
   private Boolean active;
   private String imagePath;
+  private String imageThumbPath;
+  private String imageCardPath;
+  private String imageFullPath;
   private Long categoryId;
   private Instant createdAt;
   private Instant updatedAt;
 
+  public ProductResponse() {}
+
+  public ProductResponse(
+      Long id,
+      String name,
+      String description,
+      BigDecimal price,
+      Integer stock,
+      Boolean active,
+      String imagePath,
+      String imageThumbPath,
+      String imageCardPath,
+      String imageFullPath,
+      Long categoryId,
+      Instant createdAt,
+      Instant updatedAt) {
+    this.id = id;
+    this.name = name;
+    this.description = description;
+    this.price = price;
+    this.stock = stock;
+    this.active = active;
+    this.imagePath = imagePath;
+    this.imageThumbPath = imageThumbPath;
+    this.imageCardPath = imageCardPath;
+    this.imageFullPath = imageFullPath;
+    this.categoryId = categoryId;
+    this.createdAt = createdAt;
+    this.updatedAt = updatedAt;
+  }
+
   public static ProductResponse from(Product product) {
     ProductResponse res = new ProductResponse();
     res.setId(product.getId());
@@ -25,6 +59,9 @@ public class ProductResponse {
     res.setStock(product.getStock());
     res.setActive(product.getActive());
     res.setImagePath(product.getImagePath());
+    res.setImageThumbPath(product.getImageThumbPath());
+    res.setImageCardPath(product.getImageCardPath());
+    res.setImageFullPath(product.getImageFullPath());
     res.setCategoryId(product.getCategory() != null ? product.getCategory().getId() : null);
     res.setCreatedAt(product.getCreatedAt());
     res.setUpdatedAt(product.getUpdatedAt());
@@ -87,6 +124,30 @@ public class ProductResponse {
     this.imagePath = imagePath;
   }
 
+  public String getImageThumbPath() {
+    return imageThumbPath;
+  }
+
+  public void setImageThumbPath(String imageThumbPath) {
+    this.imageThumbPath = imageThumbPath;
+  }
+
+  public String getImageCardPath() {
+    return imageCardPath;
+  }
+
+  public void setImageCardPath(String imageCardPath) {
+    this.imageCardPath = imageCardPath;
+  }
+
+  public String getImageFullPath() {
+    return imageFullPath;
+  }
+
+  public void setImageFullPath(String imageFullPath) {
+    this.imageFullPath = imageFullPath;
+  }
+
   public Long getCategoryId() {
     return categoryId;
   }
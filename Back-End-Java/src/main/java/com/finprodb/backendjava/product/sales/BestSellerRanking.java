@@ -0,0 +1,172 @@
+package com.finprodb.backendjava.product.sales;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.search.ProductIndex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Units sold per product, kept as ordered sets (global and per category) of live products that
+// have sold at least once, so the best sellers are always the head of a set.
+@Component
+public class BestSellerRanking implements ProductIndex {
+  private static final Comparator<Ranked> ORDER =
+      Comparator.comparingLong((Ranked r) -> -r.units).thenComparingLong(r -> r.id);
+  // Live products without a category are kept under this key.
+  private static final Long NO_CATEGORY = -1L;
+
+  private final int topK;
+  private final Map<Long, Long> units = new HashMap<>();
+  private final Map<Long, Long> liveCategory = new HashMap<>();
+  private final Map<Long, Ranked> ranked = new HashMap<>();
+  private final NavigableSet<Ranked> global = new TreeSet<>(ORDER);
+  private final Map<Long, NavigableSet<Ranked>> byCategory = new HashMap<>();
+  private volatile boolean ready;
+
+  public BestSellerRanking(@Value("${app.sales.top-k:1000}") int topK) {
+    this.topK = Math.max(topK, 1);
+  }
+
+  @Override
+  public synchronized void clear() {
+    ready = false;
+    liveCategory.clear();
+    ranked.clear();
+    global.clear();
+    byCategory.clear();
+  }
+
+  @Override
+  public synchronized void upsert(Product product) {
+    boolean live = product.getDeletedAt() == null && Boolean.TRUE.equals(product.getActive());
+    if (live) {
+      Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+      liveCategory.put(product.getId(), categoryId != null ? categoryId : NO_CATEGORY);
+    } else {
+      liveCategory.remove(product.getId());
+    }
+    reposition(product.getId());
+  }
+
+  @Override
+  public void markReady() {
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  public synchronized Map<Long, Long> add(Map<Long, Long> deltas) {
+    Map<Long, Long> totals = new HashMap<>();
+    for (Map.Entry<Long, Long> e : deltas.entrySet()) {
+      totals.put(e.getKey(), units.merge(e.getKey(), e.getValue(), Long::sum));
+      reposition(e.getKey());
+    }
+    return totals;
+  }
+
+  public synchronized Map<Long, Long> replaceAll(Map<Long, Long> totals) {
+    Map<Long, Long> previous = new HashMap<>(units);
+    units.clear();
+    units.putAll(totals);
+    for (Long id : previous.keySet()) {
+      reposition(id);
+    }
+    for (Long id : totals.keySet()) {
+      reposition(id);
+    }
+    return previous;
+  }
+
+  // Top-k live product ids by units sold, best first, across the given categories; null means the
+  // whole catalog.
+  public synchronized long[] ranked(Collection<Long> categoryIds) {
+    if (categoryIds == null) {
+      return head(List.of(global.iterator()));
+    }
+    List<Iterator<Ranked>> sets = new ArrayList<>(categoryIds.size());
+    for (Long categoryId : categoryIds) {
+      NavigableSet<Ranked> set = byCategory.get(categoryId);
+      if (set != null) {
+        sets.add(set.iterator());
+      }
+    }
+    return head(sets);
+  }
+
+  // k-way merge of already ordered sets, stopping at topK.
+  private long[] head(List<Iterator<Ranked>> sets) {
+    PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> ORDER.compare(a.head, b.head));
+    for (Iterator<Ranked> it : sets) {
+      if (it.hasNext()) {
+        heads.add(new Cursor(it.next(), it));
+      }
+    }
+    long[] ids = new long[topK];
+    int n = 0;
+    while (n < topK && !heads.isEmpty()) {
+      Cursor top = heads.poll();
+      ids[n++] = top.head.id;
+      if (top.rest.hasNext()) {
+        heads.add(new Cursor(top.rest.next(), top.rest));
+      }
+    }
+    return Arrays.copyOf(ids, n);
+  }
+
+  private void reposition(Long productId) {
+    Ranked previous = ranked.remove(productId);
+    if (previous != null) {
+      global.remove(previous);
+      NavigableSet<Ranked> set = byCategory.get(previous.categoryId);
+      set.remove(previous);
+      if (set.isEmpty()) {
+        byCategory.remove(previous.categoryId);
+      }
+    }
+
+    Long categoryId = liveCategory.get(productId);
+    long sold = units.getOrDefault(productId, 0L);
+    if (categoryId == null || sold <= 0) {
+      return;
+    }
+    Ranked next = new Ranked(productId, sold, categoryId);
+    ranked.put(productId, next);
+    global.add(next);
+    byCategory.computeIfAbsent(categoryId, c -> new TreeSet<>(ORDER)).add(next);
+  }
+
+  private static final class Cursor {
+    private final Ranked head;
+    private final Iterator<Ranked> rest;
+
+    private Cursor(Ranked head, Iterator<Ranked> rest) {
+      this.head = head;
+      this.rest = rest;
+    }
+  }
+
+  private static final class Ranked {
+    private final long id;
+    private final long units;
+    private final Long categoryId;
+
+    private Ranked(long id, long units, Long categoryId) {
+      this.id = id;
+      this.units = units;
+      this.categoryId = categoryId;
+    }
+  }
+}
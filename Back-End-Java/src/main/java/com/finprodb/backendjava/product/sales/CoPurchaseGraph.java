@@ -0,0 +1,182 @@
+package com.finprodb.backendjava.product.sales;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Sparse item-item co-occurrence: for every product, how many paid orders also contained each of
+// its neighbours. Only a fixed number of neighbours is kept per product, so memory follows the
+// catalog rather than the order history.
+@Component
+public class CoPurchaseGraph {
+  // Pairs grow quadratically with basket size; very large baskets add noise, not signal.
+  static final int MAX_ORDER_PRODUCTS = 50;
+  private static final int PAGE_ROWS = 1024;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final int capacity;
+
+  // Open-addressing map from product id (0 marks a free slot; ids start at 1) to the product's
+  // row in the neighbour tables, kept at most half full. The tables are paged, PAGE_ROWS rows of
+  // capacity entries each, so growing them copies no rows. No object per product: capacity * 12
+  // bytes of neighbour entries plus about 30 bytes of map and size per product.
+  private long[] keys;
+  private int[] rows;
+  private long[][] idPages;
+  private int[][] countPages;
+  private int[] sizes;
+  private int products;
+
+  public CoPurchaseGraph(@Value("${app.related.neighbours:20}") int capacity) {
+    this.capacity = Math.max(capacity, 1);
+    reset();
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      reset();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void record(long[] productIds) {
+    long[] ids = Arrays.stream(productIds).distinct().sorted().toArray();
+    if (ids.length < 2) {
+      return;
+    }
+    if (ids.length > MAX_ORDER_PRODUCTS) {
+      ids = Arrays.copyOf(ids, MAX_ORDER_PRODUCTS);
+    }
+    lock.writeLock().lock();
+    try {
+      for (long a : ids) {
+        int row = rowOf(a);
+        long[] neighbourIds = idPages[row / PAGE_ROWS];
+        int[] counts = countPages[row / PAGE_ROWS];
+        int start = row % PAGE_ROWS * capacity;
+        for (long b : ids) {
+          if (a != b) {
+            sizes[row] = increment(neighbourIds, counts, start, sizes[row], b);
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // Neighbour ids, most often bought together first, ties by id.
+  public long[] related(long productId) {
+    lock.readLock().lock();
+    try {
+      int slot = find(productId);
+      return keys[slot] != 0 ? ranked(rows[slot]) : new long[0];
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void reset() {
+    keys = new long[64];
+    rows = new int[64];
+    idPages = new long[0][];
+    countPages = new int[0][];
+    sizes = new int[PAGE_ROWS];
+    products = 0;
+  }
+
+  private int find(long productId) {
+    int mask = keys.length - 1;
+    int i = Long.hashCode(productId * 0x9E3779B97F4A7C15L) & mask;
+    while (keys[i] != 0 && keys[i] != productId) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private int rowOf(long productId) {
+    int slot = find(productId);
+    if (keys[slot] != 0) {
+      return rows[slot];
+    }
+    if ((products + 1) * 2 > keys.length) {
+      long[] oldKeys = keys;
+      int[] oldRows = rows;
+      keys = new long[oldKeys.length * 2];
+      rows = new int[oldKeys.length * 2];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+          int moved = find(oldKeys[i]);
+          keys[moved] = oldKeys[i];
+          rows[moved] = oldRows[i];
+        }
+      }
+      slot = find(productId);
+    }
+    if (products == sizes.length) {
+      sizes = Arrays.copyOf(sizes, products * 2);
+    }
+    if (products / PAGE_ROWS == idPages.length) {
+      idPages = Arrays.copyOf(idPages, idPages.length + 1);
+      countPages = Arrays.copyOf(countPages, countPages.length + 1);
+      idPages[idPages.length - 1] = new long[PAGE_ROWS * capacity];
+      countPages[countPages.length - 1] = new int[PAGE_ROWS * capacity];
+    }
+    keys[slot] = productId;
+    rows[slot] = products;
+    return products++;
+  }
+
+  // Bounded counter table in the Space-Saving style: once full, a new neighbour takes over the
+  // weakest slot and inherits its count, so a pair that keeps recurring still climbs into the
+  // table while one-off pairs keep getting replaced. Returns the row's new size.
+  private int increment(long[] neighbourIds, int[] counts, int start, int size, long id) {
+    int end = start + size;
+    int weakest = start;
+    for (int i = start; i < end; i++) {
+      if (neighbourIds[i] == id) {
+        counts[i]++;
+        return size;
+      }
+      if (counts[i] < counts[weakest]) {
+        weakest = i;
+      }
+    }
+    if (size < capacity) {
+      neighbourIds[end] = id;
+      counts[end] = 1;
+      return size + 1;
+    }
+    neighbourIds[weakest] = id;
+    counts[weakest]++;
+    return size;
+  }
+
+  private long[] ranked(int row) {
+    long[] neighbourIds = idPages[row / PAGE_ROWS];
+    int[] counts = countPages[row / PAGE_ROWS];
+    int start = row % PAGE_ROWS * capacity;
+    int size = sizes[row];
+    long[] result = new long[size];
+    int[] resultCounts = new int[size];
+    // Insertion sort: a row holds at most capacity entries.
+    for (int n = 0; n < size; n++) {
+      long id = neighbourIds[start + n];
+      int count = counts[start + n];
+      int i = n;
+      while (i > 0
+          && (resultCounts[i - 1] < count
+              || (resultCounts[i - 1] == count && result[i - 1] > id))) {
+        result[i] = result[i - 1];
+        resultCounts[i] = resultCounts[i - 1];
+        i--;
+      }
+      result[i] = id;
+      resultCounts[i] = count;
+    }
+    return result;
+  }
+}
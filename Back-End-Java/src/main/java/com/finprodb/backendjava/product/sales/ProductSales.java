@@ -0,0 +1,33 @@
+package com.finprodb.backendjava.product.sales;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+@Entity
+@Table(name = "product_sales")
+public class ProductSales {
+  @Id
+  @Column(name = "product_id")
+  private Long productId;
+
+  @Column(nullable = false)
+  private Long unitsSold;
+
+  @Column(nullable = false)
+  private Instant updatedAt;
+
+  public Long getProductId() {
+    return productId;
+  }
+
+  public Long getUnitsSold() {
+    return unitsSold;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+}
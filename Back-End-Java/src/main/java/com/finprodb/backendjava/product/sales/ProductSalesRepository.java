@@ -0,0 +1,5 @@
+package com.finprodb.backendjava.product.sales;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProductSalesRepository extends JpaRepository<ProductSales, Long> {}
@@ -0,0 +1,280 @@
+package com.finprodb.backendjava.product.sales;
+
+import com.finprodb.backendjava.order.OrderItemRepository;
+import com.finprodb.backendjava.order.OrderPaidEvent;
+import com.finprodb.backendjava.order.OrderStatus;
+import com.finprodb.backendjava.product.ProductChangedEvent;
+import com.finprodb.backendjava.product.search.ProductSuggester;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ProductSalesService implements ApplicationRunner {
+  // Every status an order can reach once it has been paid; counters are bumped on the flip to
+  // PAID, so a rebuild has to count all of them to agree with the live counters.
+  public static final Set<OrderStatus> SOLD_STATUSES =
+      EnumSet.of(
+          OrderStatus.PAID,
+          OrderStatus.PROCESSING,
+          OrderStatus.DELIVERING,
+          OrderStatus.DELIVERED,
+          OrderStatus.COMPLETED,
+          OrderStatus.REJECTED);
+
+  private static final String UPSERT =
+      "insert into product_sales (product_id, units_sold, updated_at) values (?, ?, ?)"
+          + " on duplicate key update units_sold = units_sold + ?, updated_at = ?";
+
+  private final ProductSalesRepository salesRepository;
+  private final OrderItemRepository orderItemRepository;
+  private final BestSellerRanking ranking;
+  private final ProductSuggester suggester;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+  private final Object flushLock = new Object();
+
+  private Map<Long, Long> pending = new HashMap<>();
+  // Paid orders between their commit and onOrderPaid, and those of them a rebuild has already
+  // counted from the orders table, whose event must then not count them again.
+  private final Set<Long> committing = new HashSet<>();
+  private final Set<Long> counted = new HashSet<>();
+  // Only while a rebuild runs: orders its recount may have seen, and the sales of the paid-order
+  // events applied meanwhile, kept at the end only for orders the recount did not see.
+  private Set<Long> rebuildCandidates;
+  private Map<Long, Map<Long, Long>> paidDuringRebuild;
+
+  public ProductSalesService(
+      ProductSalesRepository salesRepository,
+      OrderItemRepository orderItemRepository,
+      BestSellerRanking ranking,
+      ProductSuggester suggester,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      ApplicationEventPublisher eventPublisher) {
+    this.salesRepository = salesRepository;
+    this.orderItemRepository = orderItemRepository;
+    this.ranking = ranking;
+    this.suggester = suggester;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    Map<Long, Long> totals = new HashMap<>();
+    for (ProductSales row : salesRepository.findAll()) {
+      totals.put(row.getProductId(), row.getUnitsSold());
+    }
+    // An empty rollup after a wipe (or on first deploy) is recovered from order history.
+    if (totals.isEmpty()) {
+      rebuild();
+    } else {
+      apply(totals);
+    }
+  }
+
+  // An order the rebuild's recount sees has passed here before the recount's snapshot was taken.
+  @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+  public synchronized void onOrderCommitting(OrderPaidEvent event) {
+    committing.add(event.getOrderId());
+    if (rebuildCandidates != null) {
+      rebuildCandidates.add(event.getOrderId());
+    }
+  }
+
+  // Runs after onOrderPaid on a commit, and is the only callback left after a rollback or a
+  // commit whose outcome is unknown.
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+  public synchronized void onOrderCompleted(OrderPaidEvent event) {
+    committing.remove(event.getOrderId());
+    counted.remove(event.getOrderId());
+  }
+
+  // Runs ahead of the listing cache and ETag listeners, so they never observe the old ranking.
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onOrderPaid(OrderPaidEvent event) {
+    committing.remove(event.getOrderId());
+    if (counted.remove(event.getOrderId())) {
+      return;
+    }
+    if (paidDuringRebuild != null) {
+      paidDuringRebuild.put(event.getOrderId(), event.getQuantitiesByProduct());
+    }
+    event.getQuantitiesByProduct().forEach((id, qty) -> pending.merge(id, qty, Long::sum));
+    suggester.updatePopularity(ranking.add(event.getQuantitiesByProduct()));
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.sales.flush-interval-ms:10000}",
+      initialDelayString = "${app.sales.flush-interval-ms:10000}")
+  public void flush() {
+    synchronized (flushLock) {
+      Map<Long, Long> batch;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        pending = new HashMap<>();
+      }
+      try {
+        transactionTemplate.executeWithoutResult(status -> write(batch));
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          batch.forEach((id, qty) -> pending.merge(id, qty, Long::sum));
+        }
+        throw e;
+      }
+    }
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flush();
+  }
+
+  // The recount and the rewrite run without holding this, so paid orders keep committing and
+  // their events keep moving the ranking meanwhile; flushLock keeps flushes out of the way.
+  public Map<String, Object> rebuild() {
+    Map<Long, Long> totals = new HashMap<>();
+    synchronized (flushLock) {
+      Map<Long, Long> unflushed;
+      synchronized (this) {
+        // Everything not yet flushed belongs to committed orders, which the recount covers.
+        unflushed = pending;
+        pending = new HashMap<>();
+        rebuildCandidates = new HashSet<>(committing);
+        paidDuringRebuild = new HashMap<>();
+      }
+      Set<Long> seen;
+      try {
+        seen =
+            transactionTemplate.execute(
+                status -> {
+                  for (Object[] row : orderItemRepository.sumQuantityByProduct(SOLD_STATUSES)) {
+                    totals.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+                  }
+                  // Read against the recount's snapshot: which of the orders that were
+                  // committing around it are already sold in it.
+                  Set<Long> candidates;
+                  synchronized (this) {
+                    candidates = new HashSet<>(rebuildCandidates);
+                    candidates.addAll(paidDuringRebuild.keySet());
+                  }
+                  Set<Long> sold = new HashSet<>(soldAmong(jdbcTemplate, candidates));
+                  jdbcTemplate.update("delete from product_sales");
+                  write(totals);
+                  return sold;
+                });
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          unflushed.forEach((id, qty) -> pending.merge(id, qty, Long::sum));
+          rebuildCandidates = null;
+          paidDuringRebuild = null;
+        }
+        throw e;
+      }
+      synchronized (this) {
+        pending = new HashMap<>();
+        paidDuringRebuild.forEach(
+            (orderId, quantities) -> {
+              if (!seen.contains(orderId)) {
+                quantities.forEach((id, qty) -> pending.merge(id, qty, Long::sum));
+              }
+            });
+        // Orders the recount saw whose events are still to come skip them.
+        counted.clear();
+        for (Long orderId : seen) {
+          if (committing.contains(orderId)) {
+            counted.add(orderId);
+          }
+        }
+        rebuildCandidates = null;
+        paidDuringRebuild = null;
+        Map<Long, Long> live = new HashMap<>(totals);
+        pending.forEach((id, qty) -> live.merge(id, qty, Long::sum));
+        apply(live);
+      }
+    }
+    // No product row changed, but the ranking did; let listing caches and ETags move.
+    eventPublisher.publishEvent(ProductChangedEvent.ranking());
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("products", totals.size());
+    result.put("unitsSold", totals.values().stream().mapToLong(Long::longValue).sum());
+    return result;
+  }
+
+  // Which of the orders have been paid, as the caller's transaction sees the orders table.
+  static List<Long> soldAmong(JdbcTemplate jdbcTemplate, Set<Long> orderIds) {
+    if (orderIds.isEmpty()) {
+      return List.of();
+    }
+    List<Object> args = new ArrayList<>(orderIds);
+    SOLD_STATUSES.forEach(status -> args.add(status.name()));
+    return jdbcTemplate.queryForList(
+        "select id from orders where id in ("
+            + String.join(", ", Collections.nCopies(orderIds.size(), "?"))
+            + ") and status in ("
+            + String.join(", ", Collections.nCopies(SOLD_STATUSES.size(), "?"))
+            + ")",
+        Long.class,
+        args.toArray());
+  }
+
+  private void apply(Map<Long, Long> totals) {
+    Map<Long, Long> popularity = new HashMap<>();
+    for (Long id : ranking.replaceAll(totals).keySet()) {
+      popularity.put(id, 0L);
+    }
+    popularity.putAll(totals);
+    suggester.updatePopularity(popularity);
+  }
+
+  private void write(Map<Long, Long> deltas) {
+    if (deltas.isEmpty()) {
+      return;
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    List<Map.Entry<Long, Long>> rows = new ArrayList<>(deltas.entrySet());
+    jdbcTemplate.batchUpdate(
+        UPSERT,
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setLong(1, row.getKey());
+          ps.setLong(2, row.getValue());
+          ps.setTimestamp(3, now, utc);
+          ps.setLong(4, row.getValue());
+          ps.setTimestamp(5, now, utc);
+        });
+  }
+}
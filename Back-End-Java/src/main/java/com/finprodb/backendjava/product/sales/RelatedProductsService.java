@@ -0,0 +1,163 @@
+package com.finprodb.backendjava.product.sales;
+
+import com.finprodb.backendjava.order.OrderPaidEvent;
+import com.finprodb.backendjava.order.OrderStatus;
+import com.finprodb.backendjava.product.ProductRepository;
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class RelatedProductsService implements ApplicationRunner {
+  public static final int MAX_LIMIT = 20;
+
+  private final CoPurchaseGraph graph;
+  private final ProductRepository productRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  // Baskets of the orders paid while the startup replay runs, by order id; null outside it.
+  private Map<Long, long[]> paidDuringReplay;
+
+  public RelatedProductsService(
+      CoPurchaseGraph graph,
+      ProductRepository productRepository,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate) {
+    this.graph = graph;
+    this.productRepository = productRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+  }
+
+  // The graph is not persisted; it is replayed once from paid order items at startup, streamed
+  // in order id order so only one basket is held at a time. The server already takes payments
+  // meanwhile: their events are held back and, once the replay is done, recorded only for the
+  // orders its snapshot did not contain.
+  @Override
+  public void run(ApplicationArguments args) {
+    synchronized (this) {
+      graph.clear();
+      paidDuringReplay = new HashMap<>();
+    }
+    Set<Long> replayed = Set.of();
+    try {
+      replayed = transactionTemplate.execute(status -> replay());
+    } finally {
+      synchronized (this) {
+        for (Map.Entry<Long, long[]> paid : paidDuringReplay.entrySet()) {
+          if (!replayed.contains(paid.getKey())) {
+            graph.record(paid.getValue());
+          }
+        }
+        paidDuringReplay = null;
+      }
+    }
+  }
+
+  // Returns the orders paid during the replay that it has already counted.
+  private Set<Long> replay() {
+    String sql =
+        "select oi.order_id, oi.product_id from order_items oi"
+            + " join orders o on o.id = oi.order_id where o.status in ("
+            + String.join(", ", Collections.nCopies(ProductSalesService.SOLD_STATUSES.size(), "?"))
+            + ") order by oi.order_id";
+    Basket basket = new Basket();
+    jdbcTemplate.query(
+        con -> {
+          PreparedStatement ps = con.prepareStatement(sql);
+          ps.setFetchSize(1000);
+          int i = 1;
+          for (OrderStatus status : ProductSalesService.SOLD_STATUSES) {
+            ps.setString(i++, status.name());
+          }
+          return ps;
+        },
+        rs -> {
+          long orderId = rs.getLong(1);
+          if (orderId != basket.orderId) {
+            basket.flush();
+            basket.orderId = orderId;
+          }
+          basket.add(rs.getLong(2));
+        });
+    basket.flush();
+    // Same snapshot as the replay query, which counted an order only if it was paid in it.
+    Set<Long> paid;
+    synchronized (this) {
+      paid = new HashSet<>(paidDuringReplay.keySet());
+    }
+    return new HashSet<>(ProductSalesService.soldAmong(jdbcTemplate, paid));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onOrderPaid(OrderPaidEvent event) {
+    long[] productIds =
+        event.getQuantitiesByProduct().keySet().stream().mapToLong(Long::longValue).toArray();
+    if (paidDuringReplay != null) {
+      paidDuringReplay.put(event.getOrderId(), productIds);
+    } else {
+      graph.record(productIds);
+    }
+  }
+
+  public List<ProductResponse> related(Long productId, int limit) {
+    int max = Math.min(Math.max(limit, 1), MAX_LIMIT);
+    long[] neighbours = graph.related(productId);
+    if (neighbours.length == 0) {
+      return List.of();
+    }
+
+    List<Long> ids = new ArrayList<>(neighbours.length);
+    for (long id : neighbours) {
+      ids.add(id);
+    }
+    // Neighbours that were deactivated or deleted since drop out here.
+    Map<Long, ProductResponse> byId =
+        productRepository.findActiveListingByIdIn(ids).stream()
+            .collect(Collectors.toMap(ProductResponse::getId, Function.identity()));
+    List<ProductResponse> result = new ArrayList<>(max);
+    for (Long id : ids) {
+      ProductResponse product = byId.get(id);
+      if (product != null && result.size() < max) {
+        result.add(product);
+      }
+    }
+    return result;
+  }
+
+  private final class Basket {
+    private long orderId = -1;
+    private long[] productIds = new long[16];
+    private int size;
+
+    private void add(long productId) {
+      if (size == productIds.length) {
+        productIds = Arrays.copyOf(productIds, size * 2);
+      }
+      productIds[size++] = productId;
+    }
+
+    private void flush() {
+      if (size > 0) {
+        graph.record(Arrays.copyOf(productIds, size));
+        size = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.finprodb.backendjava.product.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class PostingList {
+  private static final long[] EMPTY = new long[0];
+
+  private long[] ids = new long[4];
+  private int size;
+
+  public int size() {
+    return size;
+  }
+
+  public long get(int index) {
+    return ids[index];
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void add(long id) {
+    if (size == 0 || ids[size - 1] < id) {
+      ensureCapacity();
+      ids[size++] = id;
+      return;
+    }
+
+    int pos = Arrays.binarySearch(ids, 0, size, id);
+    if (pos >= 0) {
+      return;
+    }
+    int insertAt = -pos - 1;
+    ensureCapacity();
+    System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+    ids[insertAt] = id;
+    size++;
+  }
+
+  public void remove(long id) {
+    int pos = Arrays.binarySearch(ids, 0, size, id);
+    if (pos < 0) {
+      return;
+    }
+    System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+    size--;
+  }
+
+  public long[] toArray() {
+    return size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+  }
+
+  private void ensureCapacity() {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, ids.length + (ids.length >> 1) + 1);
+    }
+  }
+
+  public static long[] union(List<PostingList> lists) {
+    if (lists.isEmpty()) {
+      return EMPTY;
+    }
+    if (lists.size() == 1) {
+      return lists.get(0).toArray();
+    }
+
+    int total = 0;
+    for (PostingList list : lists) {
+      total += list.size;
+    }
+    long[] merged = new long[total];
+    int offset = 0;
+    for (PostingList list : lists) {
+      System.arraycopy(list.ids, 0, merged, offset, list.size);
+      offset += list.size;
+    }
+    Arrays.sort(merged);
+
+    int unique = 0;
+    for (int i = 0; i < merged.length; i++) {
+      if (unique == 0 || merged[unique - 1] != merged[i]) {
+        merged[unique++] = merged[i];
+      }
+    }
+    return Arrays.copyOf(merged, unique);
+  }
+
+  public static long[] intersect(long[] a, long[] b) {
+    long[] out = new long[Math.min(a.length, b.length)];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] == b[j]) {
+        out[n++] = a[i];
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return Arrays.copyOf(out, n);
+  }
+}
@@ -0,0 +1,209 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.dto.ProductFacetsResponse;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ProductFacetIndex implements ProductIndex {
+  private static final long NO_CATEGORY = 0L;
+
+  private final long[] bandBoundsMinor;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Long, Integer> slotById = new HashMap<>();
+  private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+  // Column snapshot of every non-deleted product; a slot with id 0 is free.
+  private long[] ids = new long[0];
+  private long[] categoryIds = new long[0];
+  private long[] pricesMinor = new long[0];
+  private int[] stocks = new int[0];
+  private boolean[] active = new boolean[0];
+  private int used;
+  private volatile boolean ready;
+
+  public ProductFacetIndex(
+      @Value("${app.search.price-bands:50000,100000,250000,500000,1000000}") List<BigDecimal> bands) {
+    this.bandBoundsMinor = bands.stream().mapToLong(ProductFacetIndex::toMinor).sorted().toArray();
+  }
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      ready = false;
+      slotById.clear();
+      freeSlots.clear();
+      ids = new long[0];
+      categoryIds = new long[0];
+      pricesMinor = new long[0];
+      stocks = new int[0];
+      active = new boolean[0];
+      used = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void upsert(Product product) {
+    lock.writeLock().lock();
+    try {
+      Integer slot = slotById.get(product.getId());
+      if (product.getDeletedAt() != null) {
+        if (slot != null) {
+          slotById.remove(product.getId());
+          ids[slot] = 0L;
+          freeSlots.push(slot);
+        }
+        return;
+      }
+
+      if (slot == null) {
+        slot = allocateSlot();
+        slotById.put(product.getId(), slot);
+      }
+      ids[slot] = product.getId();
+      categoryIds[slot] = product.getCategory() != null ? product.getCategory().getId() : NO_CATEGORY;
+      pricesMinor[slot] = product.getPrice() != null ? toMinor(product.getPrice()) : 0L;
+      stocks[slot] = product.getStock() != null ? product.getStock() : 0;
+      active[slot] = Boolean.TRUE.equals(product.getActive());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void markReady() {
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  // A non-null subtree (category ids) narrows the totals and price bands; category counts ignore
+  // it so the storefront can show sibling counts.
+  public ProductFacetsResponse facets(long[] matchedIds, Set<Long> subtree) {
+    Tally tally = new Tally(subtree);
+    lock.readLock().lock();
+    try {
+      int count = matchedIds != null ? matchedIds.length : used;
+      for (int i = 0; i < count; i++) {
+        int slot;
+        if (matchedIds != null) {
+          Integer found = slotById.get(matchedIds[i]);
+          if (found == null) {
+            continue;
+          }
+          slot = found;
+        } else {
+          slot = i;
+        }
+        if (ids[slot] == 0L || !active[slot]) {
+          continue;
+        }
+        tally.add(categoryIds[slot], pricesMinor[slot], stocks[slot] > 0, 1);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return tally.toResponse();
+  }
+
+  // The same facets from live products grouped in the database, for while the index is not
+  // ready: rows of {category id or null, price, in stock, product count}.
+  public ProductFacetsResponse facetsOf(List<Object[]> groups, Set<Long> subtree) {
+    Tally tally = new Tally(subtree);
+    for (Object[] group : groups) {
+      tally.add(
+          group[0] != null ? ((Number) group[0]).longValue() : NO_CATEGORY,
+          group[1] != null ? toMinor((BigDecimal) group[1]) : 0L,
+          Boolean.TRUE.equals(group[2]),
+          ((Number) group[3]).longValue());
+    }
+    return tally.toResponse();
+  }
+
+  private int bandOf(long priceMinor) {
+    int pos = Arrays.binarySearch(bandBoundsMinor, priceMinor);
+    return pos >= 0 ? pos + 1 : -pos - 1;
+  }
+
+  private final class Tally {
+    private final Set<Long> subtree;
+    private final long[] bandCounts = new long[bandBoundsMinor.length + 1];
+    private final Map<Long, Long> categoryCounts = new TreeMap<>();
+    private long total;
+    private long inStock;
+
+    private Tally(Set<Long> subtree) {
+      this.subtree = subtree;
+    }
+
+    private void add(long category, long priceMinor, boolean stocked, long n) {
+      if (category != NO_CATEGORY) {
+        categoryCounts.merge(category, n, Long::sum);
+      }
+      if (subtree != null && !subtree.contains(category)) {
+        return;
+      }
+      total += n;
+      if (stocked) {
+        inStock += n;
+      }
+      bandCounts[bandOf(priceMinor)] += n;
+    }
+
+    private ProductFacetsResponse toResponse() {
+      List<ProductFacetsResponse.CategoryCount> categories =
+          new ArrayList<>(categoryCounts.size());
+      categoryCounts.forEach(
+          (id, n) -> categories.add(new ProductFacetsResponse.CategoryCount(id, n)));
+
+      List<ProductFacetsResponse.PriceBand> bands = new ArrayList<>(bandCounts.length);
+      for (int b = 0; b < bandCounts.length; b++) {
+        BigDecimal min = fromMinor(b == 0 ? 0L : bandBoundsMinor[b - 1]);
+        BigDecimal max = b < bandBoundsMinor.length ? fromMinor(bandBoundsMinor[b]) : null;
+        bands.add(new ProductFacetsResponse.PriceBand(min, max, bandCounts[b]));
+      }
+      return new ProductFacetsResponse(total, inStock, categories, bands);
+    }
+  }
+
+  private int allocateSlot() {
+    if (!freeSlots.isEmpty()) {
+      return freeSlots.pop();
+    }
+    if (used == ids.length) {
+      int capacity = Math.max(16, ids.length * 2);
+      ids = Arrays.copyOf(ids, capacity);
+      categoryIds = Arrays.copyOf(categoryIds, capacity);
+      pricesMinor = Arrays.copyOf(pricesMinor, capacity);
+      stocks = Arrays.copyOf(stocks, capacity);
+      active = Arrays.copyOf(active, capacity);
+    }
+    return used++;
+  }
+
+  private static long toMinor(BigDecimal amount) {
+    return amount.movePointRight(2).longValue();
+  }
+
+  private static BigDecimal fromMinor(long minor) {
+    return BigDecimal.valueOf(minor, 2);
+  }
+}
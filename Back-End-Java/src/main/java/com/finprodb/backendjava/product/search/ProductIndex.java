@@ -0,0 +1,13 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+
+public interface ProductIndex {
+  void clear();
+
+  void upsert(Product product);
+
+  void markReady();
+
+  boolean isReady();
+}
@@ -0,0 +1,60 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.ProductChangedEvent;
+import com.finprodb.backendjava.product.ProductRepository;
+import java.util.List;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class ProductIndexBootstrap implements ApplicationRunner {
+  private final ProductRepository productRepository;
+  private final List<ProductIndex> indexes;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public ProductIndexBootstrap(
+      ProductRepository productRepository,
+      List<ProductIndex> indexes,
+      ApplicationEventPublisher eventPublisher) {
+    this.productRepository = productRepository;
+    this.indexes = indexes;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    rebuild();
+  }
+
+  public void rebuild() {
+    indexes.forEach(ProductIndex::clear);
+
+    long lastId = 0L;
+    while (true) {
+      List<Product> batch =
+          productRepository.findTop500ByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(lastId);
+      if (batch.isEmpty()) {
+        break;
+      }
+      for (Product product : batch) {
+        indexes.forEach(index -> index.upsert(product));
+      }
+      lastId = batch.get(batch.size() - 1).getId();
+    }
+
+    indexes.forEach(ProductIndex::markReady);
+    // Listings cached meanwhile came from the database fallbacks; let them be read again.
+    eventPublisher.publishEvent(new ProductChangedEvent(List.of()));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onProductChanged(ProductChangedEvent event) {
+    for (Product product : event.getProducts()) {
+      indexes.forEach(index -> index.upsert(product));
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ProductSearchIndex implements ProductIndex {
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final TreeMap<String, PostingList> postings = new TreeMap<>();
+  private final Map<Long, String[]> termsByProduct = new HashMap<>();
+  private final Map<Long, Long> categoryByProduct = new HashMap<>();
+  private volatile boolean ready;
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      ready = false;
+      postings.clear();
+      termsByProduct.clear();
+      categoryByProduct.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void upsert(Product product) {
+    if (!isSearchable(product)) {
+      remove(product.getId());
+      return;
+    }
+
+    Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenize(product.getName()));
+    terms.addAll(SearchTokenizer.tokenize(product.getDescription()));
+    Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+
+    lock.writeLock().lock();
+    try {
+      removeLocked(product.getId());
+      long id = product.getId();
+      for (String term : terms) {
+        postings.computeIfAbsent(term, t -> new PostingList()).add(id);
+      }
+      termsByProduct.put(product.getId(), terms.toArray(new String[0]));
+      if (categoryId != null) {
+        categoryByProduct.put(product.getId(), categoryId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(Long productId) {
+    lock.writeLock().lock();
+    try {
+      removeLocked(productId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void markReady() {
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  // Every query token must match (as a prefix) some indexed term; ids come back in ascending order.
+  // Non-null categoryIds keeps only products in one of those categories.
+  public long[] search(String query, Set<Long> categoryIds) {
+    List<String> tokens = SearchTokenizer.tokenize(query);
+    if (tokens.isEmpty()) {
+      return new long[0];
+    }
+
+    lock.readLock().lock();
+    try {
+      List<long[]> matches = new ArrayList<>(tokens.size());
+      for (String token : tokens) {
+        NavigableMap<String, PostingList> range =
+            postings.subMap(token, true, token + Character.MAX_VALUE, false);
+        if (range.isEmpty()) {
+          return new long[0];
+        }
+        matches.add(PostingList.union(new ArrayList<>(range.values())));
+      }
+
+      matches.sort(Comparator.comparingInt(ids -> ids.length));
+      long[] result = matches.get(0);
+      for (int i = 1; i < matches.size() && result.length > 0; i++) {
+        result = PostingList.intersect(result, matches.get(i));
+      }
+
+      if (categoryIds == null) {
+        return result;
+      }
+      long[] filtered = new long[result.length];
+      int n = 0;
+      for (long id : result) {
+        Long categoryId = categoryByProduct.get(id);
+        if (categoryId != null && categoryIds.contains(categoryId)) {
+          filtered[n++] = id;
+        }
+      }
+      return Arrays.copyOf(filtered, n);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void removeLocked(Long productId) {
+    String[] terms = termsByProduct.remove(productId);
+    categoryByProduct.remove(productId);
+    if (terms == null) {
+      return;
+    }
+    for (String term : terms) {
+      PostingList list = postings.get(term);
+      if (list == null) {
+        continue;
+      }
+      list.remove(productId);
+      if (list.isEmpty()) {
+        postings.remove(term);
+      }
+    }
+  }
+
+  private static boolean isSearchable(Product product) {
+    return product.getDeletedAt() == null && Boolean.TRUE.equals(product.getActive());
+  }
+}
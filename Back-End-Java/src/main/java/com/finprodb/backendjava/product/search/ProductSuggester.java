@@ -0,0 +1,264 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.dto.ProductSuggestion;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ProductSuggester implements ProductIndex {
+  public static final int MAX_SUGGESTIONS = 10;
+  private static final int MAX_KEY_LENGTH = 64;
+
+  private final Map<Long, String> names = new HashMap<>();
+  private final Map<Long, Long> popularity = new HashMap<>();
+  private final AtomicBoolean rebuildPending = new AtomicBoolean();
+  private final ExecutorService rebuilder =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t = new Thread(r, "product-suggest-rebuild");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+  private volatile boolean ready;
+
+  @Override
+  public void clear() {
+    synchronized (names) {
+      ready = false;
+      names.clear();
+    }
+  }
+
+  @Override
+  public void upsert(Product product) {
+    boolean live = product.getDeletedAt() == null && Boolean.TRUE.equals(product.getActive());
+    boolean changed;
+    synchronized (names) {
+      String previous =
+          live ? names.put(product.getId(), product.getName()) : names.remove(product.getId());
+      changed = !Objects.equals(previous, live ? product.getName() : null);
+    }
+    // Stock and price updates arrive here too; only name/visibility changes need a rebuild.
+    if (changed && ready) {
+      scheduleRebuild();
+    }
+  }
+
+  public void updatePopularity(Map<Long, Long> scores) {
+    synchronized (names) {
+      popularity.putAll(scores);
+    }
+    if (ready) {
+      scheduleRebuild();
+    }
+  }
+
+  @Override
+  public void markReady() {
+    snapshot = buildSnapshot();
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  public List<ProductSuggestion> suggest(String prefix, int limit) {
+    String normalized = String.join(" ", SearchTokenizer.tokenize(prefix));
+    if (normalized.isEmpty()) {
+      return List.of();
+    }
+    return snapshot.topK(normalized, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
+  }
+
+  @PreDestroy
+  void shutdown() {
+    rebuilder.shutdownNow();
+  }
+
+  private void scheduleRebuild() {
+    if (rebuildPending.compareAndSet(false, true)) {
+      rebuilder.execute(
+          () -> {
+            rebuildPending.set(false);
+            snapshot = buildSnapshot();
+          });
+    }
+  }
+
+  private Snapshot buildSnapshot() {
+    long[] productIds;
+    String[] productNames;
+    long[] scores;
+    synchronized (names) {
+      productIds = new long[names.size()];
+      productNames = new String[names.size()];
+      scores = new long[names.size()];
+      int i = 0;
+      for (Map.Entry<Long, String> e : names.entrySet()) {
+        productIds[i] = e.getKey();
+        productNames[i] = e.getValue();
+        scores[i] = popularity.getOrDefault(e.getKey(), 0L);
+        i++;
+      }
+    }
+
+    // One key per word position, so "lari" also completes "Sepatu Lari Merah".
+    List<Key> keys = new ArrayList<>();
+    for (int p = 0; p < productIds.length; p++) {
+      List<String> tokens = SearchTokenizer.tokenize(productNames[p]);
+      for (int w = 0; w < tokens.size(); w++) {
+        String key = String.join(" ", tokens.subList(w, tokens.size()));
+        keys.add(new Key(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key, p));
+      }
+    }
+    keys.sort(Comparator.comparing((Key k) -> k.text).thenComparingInt(k -> k.product));
+
+    String[] sortedKeys = new String[keys.size()];
+    int[] keyProduct = new int[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      sortedKeys[i] = keys.get(i).text;
+      keyProduct[i] = keys.get(i).product;
+    }
+    return new Snapshot(productIds, productNames, scores, sortedKeys, keyProduct);
+  }
+
+  private static final class Key {
+    private final String text;
+    private final int product;
+
+    private Key(String text, int product) {
+      this.text = text;
+      this.product = product;
+    }
+  }
+
+  // Immutable: sorted completion keys plus a segment tree that holds, for every key range, the
+  // position of its most popular key. A prefix maps to one contiguous key range, and the top k
+  // of that range are pulled from the tree in O(k log n).
+  private static final class Snapshot {
+    private static final Snapshot EMPTY =
+        new Snapshot(new long[0], new String[0], new long[0], new String[0], new int[0]);
+
+    private final long[] productIds;
+    private final String[] productNames;
+    private final long[] scores;
+    private final String[] keys;
+    private final int[] keyProduct;
+    private final int leaves;
+    private final int[] best;
+
+    private Snapshot(
+        long[] productIds, String[] productNames, long[] scores, String[] keys, int[] keyProduct) {
+      this.productIds = productIds;
+      this.productNames = productNames;
+      this.scores = scores;
+      this.keys = keys;
+      this.keyProduct = keyProduct;
+
+      int size = 1;
+      while (size < Math.max(keys.length, 1)) {
+        size <<= 1;
+      }
+      this.leaves = size;
+      this.best = new int[2 * size];
+      Arrays.fill(best, -1);
+      for (int i = 0; i < keys.length; i++) {
+        best[size + i] = i;
+      }
+      for (int node = size - 1; node >= 1; node--) {
+        best[node] = better(best[2 * node], best[2 * node + 1]);
+      }
+    }
+
+    private List<ProductSuggestion> topK(String prefix, int k) {
+      int lo = lowerBound(prefix);
+      int hi = lowerBound(prefix + Character.MAX_VALUE);
+      if (lo >= hi) {
+        return List.of();
+      }
+
+      PriorityQueue<Integer> frontier = new PriorityQueue<>(this::compareNodes);
+      for (int l = lo + leaves, r = hi + leaves; l < r; l >>= 1, r >>= 1) {
+        if ((l & 1) == 1) {
+          frontier.add(l++);
+        }
+        if ((r & 1) == 1) {
+          frontier.add(--r);
+        }
+      }
+
+      List<ProductSuggestion> out = new ArrayList<>(k);
+      Set<Integer> seen = new HashSet<>();
+      while (!frontier.isEmpty() && out.size() < k) {
+        int node = frontier.poll();
+        if (best[node] < 0) {
+          continue;
+        }
+        if (node >= leaves) {
+          int product = keyProduct[node - leaves];
+          if (seen.add(product)) {
+            out.add(new ProductSuggestion(productIds[product], productNames[product]));
+          }
+          continue;
+        }
+        frontier.add(2 * node);
+        frontier.add(2 * node + 1);
+      }
+      return out;
+    }
+
+    private int compareNodes(int a, int b) {
+      if (best[a] == best[b]) {
+        return 0;
+      }
+      return better(best[a], best[b]) == best[a] ? -1 : 1;
+    }
+
+    private int better(int a, int b) {
+      if (a < 0) {
+        return b;
+      }
+      if (b < 0) {
+        return a;
+      }
+      long sa = scores[keyProduct[a]];
+      long sb = scores[keyProduct[b]];
+      if (sa != sb) {
+        return sa > sb ? a : b;
+      }
+      return a < b ? a : b;
+    }
+
+    private int lowerBound(String value) {
+      int lo = 0;
+      int hi = keys.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (keys[mid].compareTo(value) < 0) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+  }
+}
@@ -0,0 +1,350 @@
+package com.finprodb.backendjava.product.search;
+
+import com.finprodb.backendjava.product.Product;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ProductTrigramIndex implements ProductIndex {
+  static final double MIN_SIMILARITY = 0.4;
+  static final int MAX_CANDIDATES = 10000;
+  static final int MAX_RESULTS = 1000;
+  // Document-frequency cut-off: a trigram in more products than this says little about which of
+  // them match, and reading its postings would cost time linear in the catalog.
+  static final int MAX_GRAM_POSTINGS = 100_000;
+  private static final int MAX_TOKEN_LENGTH = 32;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Long, PostingList> postings = new HashMap<>();
+  private final Map<Long, Entry> entries = new HashMap<>();
+  private volatile boolean ready;
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      ready = false;
+      postings.clear();
+      entries.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void upsert(Product product) {
+    boolean live = product.getDeletedAt() == null && Boolean.TRUE.equals(product.getActive());
+    Entry entry = null;
+    if (live) {
+      List<String> tokens = SearchTokenizer.tokenize(product.getName());
+      Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+      entry = new Entry(trigrams(tokens), tokens.toArray(new String[0]), categoryId);
+    }
+
+    lock.writeLock().lock();
+    try {
+      long id = product.getId();
+      Entry previous = entries.remove(id);
+      if (previous != null) {
+        unindex(previous.grams, id);
+      }
+      if (entry != null) {
+        index(entry.grams, id);
+        entries.put(id, entry);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void markReady() {
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  // Ranked by share of the query's trigrams found in the name, then by edit distance of the
+  // query words to their closest name words. Scoring is capped at MAX_CANDIDATES products
+  // whatever the catalog size, and they are the ones that share the most of the rarest query
+  // trigrams, wherever they are in the id range. A category filter drops other products as they
+  // are counted, before the cap, so a small category is not starved by the rest of the catalog.
+  public long[] search(String query, Set<Long> categoryIds) {
+    List<String> queryTokens = SearchTokenizer.tokenize(query);
+    long[] queryGrams = trigrams(queryTokens);
+    if (queryGrams.length == 0) {
+      return new long[0];
+    }
+    int minShared = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * queryGrams.length));
+
+    List<Match> matches = new ArrayList<>();
+    Candidates candidates = new Candidates();
+    lock.readLock().lock();
+    try {
+      count(queryGrams, minShared, categoryIds, candidates);
+      for (long id : candidates.top(MAX_CANDIDATES)) {
+        Entry entry = entries.get(id);
+        int shared = shared(queryGrams, entry.grams);
+        if (shared >= minShared) {
+          matches.add(new Match(id, (double) shared / queryGrams.length, entry.tokens));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    for (Match match : matches) {
+      match.distance = distance(queryTokens, match.tokens);
+    }
+    matches.sort(
+        Comparator.comparingDouble((Match m) -> -m.similarity)
+            .thenComparingInt(m -> m.distance)
+            .thenComparingLong(m -> m.id));
+
+    long[] ids = new long[Math.min(matches.size(), MAX_RESULTS)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = matches.get(i).id;
+    }
+    return ids;
+  }
+
+  // Counts, for every product in the rarest of the query's postings, how many of those lists it
+  // is in (ScanCount). Any product sharing minShared trigrams must appear in one of the rarest
+  // (lists - minShared + 1) lists, so only those are read, and of those only the ones under
+  // MAX_GRAM_POSTINGS. When even the rarest is over it, every query trigram is common and an even
+  // sample of MAX_GRAM_POSTINGS ids from the rarest list stands in for it. The lists are sorted
+  // by id, so they are merged in one sequential pass instead of counting through a hash table.
+  private void count(
+      long[] queryGrams, int minShared, Set<Long> categoryIds, Candidates candidates) {
+    List<PostingList> lists = new ArrayList<>(queryGrams.length);
+    for (long gram : queryGrams) {
+      PostingList list = postings.get(gram);
+      if (list != null) {
+        lists.add(list);
+      }
+    }
+    if (lists.size() < minShared) {
+      return;
+    }
+    lists.sort(Comparator.comparingInt(PostingList::size));
+    int scanned = 0;
+    while (scanned < lists.size() - minShared + 1
+        && lists.get(scanned).size() <= MAX_GRAM_POSTINGS) {
+      scanned++;
+    }
+    if (scanned == 0) {
+      PostingList rarest = lists.get(0);
+      for (int j = 0; j < MAX_GRAM_POSTINGS; j++) {
+        long id = rarest.get((int) ((long) j * rarest.size() / MAX_GRAM_POSTINGS));
+        if (inCategories(id, categoryIds)) {
+          candidates.add(id, 1);
+        }
+      }
+      return;
+    }
+    int[] positions = new int[scanned];
+    long[] heads = new long[scanned];
+    for (int i = 0; i < scanned; i++) {
+      heads[i] = lists.get(i).get(0);
+    }
+    while (true) {
+      long id = Long.MAX_VALUE;
+      for (long head : heads) {
+        id = Math.min(id, head);
+      }
+      if (id == Long.MAX_VALUE) {
+        return;
+      }
+      int count = 0;
+      for (int i = 0; i < scanned; i++) {
+        if (heads[i] == id) {
+          count++;
+          PostingList list = lists.get(i);
+          heads[i] = ++positions[i] < list.size() ? list.get(positions[i]) : Long.MAX_VALUE;
+        }
+      }
+      if (inCategories(id, categoryIds)) {
+        candidates.add(id, count);
+      }
+    }
+  }
+
+  private boolean inCategories(long id, Set<Long> categoryIds) {
+    return categoryIds == null || categoryIds.contains(entries.get(id).categoryId);
+  }
+
+  private void index(long[] grams, long id) {
+    for (long gram : grams) {
+      postings.computeIfAbsent(gram, g -> new PostingList()).add(id);
+    }
+  }
+
+  private void unindex(long[] grams, long id) {
+    for (long gram : grams) {
+      PostingList list = postings.get(gram);
+      list.remove(id);
+      if (list.isEmpty()) {
+        postings.remove(gram);
+      }
+    }
+  }
+
+  // Trigrams of each word padded pg_trgm style ("  word "), packed three chars to a long.
+  static long[] trigrams(List<String> tokens) {
+    long[] grams = new long[0];
+    int n = 0;
+    for (String token : tokens) {
+      String word =
+          token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token;
+      String padded = "  " + word + " ";
+      grams = Arrays.copyOf(grams, n + padded.length() - 2);
+      for (int i = 0; i + 3 <= padded.length(); i++) {
+        grams[n++] =
+            ((long) padded.charAt(i) << 32)
+                | ((long) padded.charAt(i + 1) << 16)
+                | padded.charAt(i + 2);
+      }
+    }
+    Arrays.sort(grams, 0, n);
+    int unique = 0;
+    for (int i = 0; i < n; i++) {
+      if (unique == 0 || grams[unique - 1] != grams[i]) {
+        grams[unique++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, unique);
+  }
+
+  static int shared(long[] a, long[] b) {
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] == b[j]) {
+        n++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return n;
+  }
+
+  static int distance(List<String> queryTokens, String[] nameTokens) {
+    int total = 0;
+    for (String q : queryTokens) {
+      int best = q.length();
+      for (String name : nameTokens) {
+        best = Math.min(best, levenshtein(q, name, best));
+        if (best == 0) {
+          break;
+        }
+      }
+      total += best;
+    }
+    return total;
+  }
+
+  // Plain two-row Levenshtein that gives up once every cell in a row exceeds the current best.
+  private static int levenshtein(String a, String b, int limit) {
+    if (Math.abs(a.length() - b.length()) >= limit) {
+      return limit;
+    }
+    int[] prev = new int[b.length() + 1];
+    int[] curr = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      prev[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      curr[0] = i;
+      int rowMin = curr[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+        rowMin = Math.min(rowMin, curr[j]);
+      }
+      if (rowMin >= limit) {
+        return limit;
+      }
+      int[] tmp = prev;
+      prev = curr;
+      curr = tmp;
+    }
+    return Math.min(prev[b.length()], limit);
+  }
+
+  private static final class Entry {
+    private final long[] grams;
+    private final String[] tokens;
+    private final Long categoryId;
+
+    private Entry(long[] grams, String[] tokens, Long categoryId) {
+      this.grams = grams;
+      this.tokens = tokens;
+      this.categoryId = categoryId;
+    }
+  }
+
+  // Product ids from the merged postings, grouped by how many of the lists each was in.
+  private static final class Candidates {
+    private long[][] byCount = new long[0][];
+    private int[] sizes = new int[0];
+    private int size;
+
+    void add(long id, int count) {
+      if (count >= byCount.length) {
+        byCount = Arrays.copyOf(byCount, count + 1);
+        sizes = Arrays.copyOf(sizes, count + 1);
+      }
+      long[] ids = byCount[count];
+      if (ids == null) {
+        ids = byCount[count] = new long[64];
+      } else if (sizes[count] == ids.length) {
+        ids = byCount[count] = Arrays.copyOf(ids, ids.length * 2);
+      }
+      ids[sizes[count]++] = id;
+      size++;
+    }
+
+    // The `limit` ids with the highest counts. Ids tied at the cut are sampled evenly from their
+    // group, so the ones kept are spread over the whole id range rather than the oldest.
+    long[] top(int limit) {
+      long[] result = new long[Math.min(size, limit)];
+      int n = 0;
+      for (int count = byCount.length - 1; count > 0 && n < result.length; count--) {
+        int available = sizes[count];
+        int wanted = Math.min(available, result.length - n);
+        for (int j = 0; j < wanted; j++) {
+          result[n++] = byCount[count][(int) ((long) j * available / wanted)];
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class Match {
+    private final long id;
+    private final double similarity;
+    private final String[] tokens;
+    private int distance;
+
+    private Match(long id, double similarity, String[] tokens) {
+      this.id = id;
+      this.similarity = similarity;
+      this.tokens = tokens;
+    }
+  }
+}
@@ -60,6 +60,8 @@ public class SecurityConfig {
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/uploads/**")
                     .permitAll()
+                    .requestMatchers("/api/guest-cart", "/api/guest-cart/**")
+                    .permitAll()
                     .requestMatchers("/api/payments/midtrans/notification")
                     .permitAll()
                     .requestMatchers("/api/admin/products", "/api/admin/products/**")
@@ -0,0 +1,179 @@
+package com.finprodb.backendjava.upload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+// Content-addressed store shared by product and category images. Each distinct upload is kept
+// once, at "uploads/blobs/<h0h1>/<h2h3>/<sha-256>.<ext>", so leaf directories stay small however
+// many images there are, and upload_blobs counts the rows pointing at it. A name never changes
+// meaning, so everything under /uploads can be cached as immutable.
+@Component
+public class BlobStore {
+  public static final String ROOT = "uploads";
+  public static final String BLOBS = "blobs";
+
+  private static final String PREFIX = "/" + ROOT + "/" + BLOBS + "/";
+  // Raster formats are already compressed; only text-based images gain from a .gz sibling.
+  private static final Set<String> COMPRESSIBLE = Set.of(".svg");
+
+  private static final String RETAIN =
+      "insert into upload_blobs (sha256, extension, size_bytes, ref_count, created_at, updated_at)"
+          + " values (?, ?, ?, 1, ?, ?)"
+          + " on duplicate key update ref_count = ref_count + 1, updated_at = ?";
+  private static final String RELEASE =
+      "update upload_blobs set ref_count = ref_count - 1, updated_at = ?"
+          + " where sha256 = ? and ref_count > 0";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public BlobStore(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // Stores the upload and takes one reference on it. Returns the public "/uploads/..." path; the
+  // caller must release() it again if the path ends up not being saved anywhere.
+  public String store(MultipartFile file) {
+    Path root = Paths.get(ROOT, BLOBS);
+    try {
+      Files.createDirectories(root);
+      Path tmp = Files.createTempFile(root, "upload-", ".tmp");
+      try {
+        // Hashed while streaming to disk, so the upload is read exactly once.
+        DigestInputStream in = new DigestInputStream(file.getInputStream(), sha256());
+        try (in) {
+          Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        String hash = HexFormat.of().formatHex(in.getMessageDigest().digest());
+
+        // The first upload of a blob decides its extension; identical bytes are the same image
+        // whatever the client called the file.
+        String ext = retain(hash, extension(file.getOriginalFilename()), Files.size(tmp));
+        String relative = shard(hash) + hash + ext;
+        // Counted before the file is put in place, so a sweep that removes an unreferenced blob
+        // either runs before the count (and the file is written again) or sees it and leaves
+        // the blob alone.
+        Path target = root.resolve(relative);
+        Files.createDirectories(target.getParent());
+        try {
+          Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+          // Same bytes were uploaded before; the existing file is identical.
+        }
+        if (COMPRESSIBLE.contains(ext)) {
+          gzip(target);
+        }
+        return PREFIX + relative;
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to store file", e);
+    }
+  }
+
+  // Drops one reference taken by store(). Paths from before the blob store (and null) are not
+  // counted and are ignored. Blobs that reach zero stay on disk until the orphan sweep.
+  public void release(String path) {
+    String hash = hashOf(path);
+    if (hash == null) {
+      return;
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    jdbcTemplate.update(
+        con -> {
+          PreparedStatement ps = con.prepareStatement(RELEASE);
+          ps.setTimestamp(1, now, utc());
+          ps.setString(2, hash);
+          return ps;
+        });
+  }
+
+  // The sha-256 named by a blob path, or null for anything else.
+  public static String hashOf(String path) {
+    if (path == null || !path.startsWith(PREFIX)) {
+      return null;
+    }
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    int dot = name.indexOf('.');
+    String hash = dot < 0 ? name : name.substring(0, dot);
+    return hash.matches("[0-9a-f]{64}") && path.equals(PREFIX + shard(hash) + name) ? hash : null;
+  }
+
+  private String retain(String hash, String ext, long size) {
+    Timestamp now = Timestamp.from(Instant.now());
+    jdbcTemplate.update(
+        con -> {
+          PreparedStatement ps = con.prepareStatement(RETAIN);
+          ps.setString(1, hash);
+          ps.setString(2, ext);
+          ps.setLong(3, size);
+          ps.setTimestamp(4, now, utc());
+          ps.setTimestamp(5, now, utc());
+          ps.setTimestamp(6, now, utc());
+          return ps;
+        });
+    return jdbcTemplate.queryForObject(
+        "select extension from upload_blobs where sha256 = ?", String.class, hash);
+  }
+
+  private static String shard(String hash) {
+    return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/";
+  }
+
+  private static void gzip(Path file) throws IOException {
+    Path gz = file.resolveSibling(file.getFileName() + ".gz");
+    if (Files.exists(gz)) {
+      return;
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".gz.tmp");
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+      Files.copy(file, out);
+    }
+    Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // Keeps a short alphanumeric extension so the content type can still be derived from the name.
+  private static String extension(String original) {
+    if (original == null) {
+      return "";
+    }
+    int dot = original.lastIndexOf('.');
+    if (dot < 0 || dot == original.length() - 1) {
+      return "";
+    }
+    String ext = original.substring(dot + 1).toLowerCase(Locale.ROOT);
+    return ext.matches("[a-z0-9]{1,8}") ? "." + ext : "";
+  }
+
+  private static Calendar utc() {
+    return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.finprodb.backendjava.upload;
+
+public enum ImageVariant {
+  THUMB("thumb", 200),
+  CARD("card", 480),
+  FULL("full", 1200);
+
+  private final String suffix;
+  private final int maxSize;
+
+  ImageVariant(String suffix, int maxSize) {
+    this.suffix = suffix;
+    this.maxSize = maxSize;
+  }
+
+  public String getSuffix() {
+    return suffix;
+  }
+
+  // Longest edge in pixels; smaller images are re-encoded but never upscaled.
+  public int getMaxSize() {
+    return maxSize;
+  }
+}
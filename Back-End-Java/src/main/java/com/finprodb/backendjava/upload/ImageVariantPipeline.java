@@ -0,0 +1,209 @@
+package com.finprodb.backendjava.upload;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Writes THUMB/CARD/FULL JPEG variants next to an uploaded original, off the request thread.
+// Each upload is decoded once; every variant is scaled down from the next larger one.
+@Component
+public class ImageVariantPipeline {
+  // Refuse to decode anything that would need more than ~200 MB of pixels.
+  private static final long MAX_PIXELS = 50_000_000L;
+
+  private final float quality;
+  private final ThreadPoolExecutor executor;
+
+  public ImageVariantPipeline(
+      @Value("${app.images.workers:2}") int workers,
+      @Value("${app.images.queue-capacity:64}") int queueCapacity,
+      @Value("${app.images.jpeg-quality:0.8}") float quality) {
+    this.quality = Math.min(Math.max(quality, 0.1f), 1f);
+    AtomicInteger threads = new AtomicInteger();
+    int size = Math.max(workers, 1);
+    // When the queue is full the uploading thread does the work itself, which slows bulk
+    // uploads down instead of piling up decoded images in memory.
+    this.executor =
+        new ThreadPoolExecutor(
+            size,
+            size,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+            r -> {
+              Thread t = new Thread(r, "image-variants-" + threads.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  // imagePath is the public "/uploads/..." path of the stored original. onDone receives the public
+  // paths of the variants; it is not called when the upload cannot be decoded.
+  public void submit(String imagePath, Consumer<Map<ImageVariant, String>> onDone) {
+    executor.execute(
+        () -> {
+          Map<ImageVariant, String> variants = generate(imagePath);
+          if (variants != null) {
+            onDone.accept(variants);
+          }
+        });
+  }
+
+  Map<ImageVariant, String> generate(String imagePath) {
+    String base = baseName(imagePath);
+    Map<ImageVariant, String> variants = new EnumMap<>(ImageVariant.class);
+    // Blobs are content-addressed, so variants left by an earlier upload of the same bytes are
+    // exactly what this run would produce.
+    for (ImageVariant variant : ImageVariant.values()) {
+      String path = base + "-" + variant.getSuffix() + ".jpg";
+      if (Files.isRegularFile(Paths.get(path.substring(1)))) {
+        variants.put(variant, path);
+      }
+    }
+    if (variants.size() == ImageVariant.values().length) {
+      return variants;
+    }
+
+    Path original = Paths.get(imagePath.substring(1));
+    BufferedImage image;
+    try {
+      image = decode(original);
+    } catch (IOException | RuntimeException e) {
+      // Unsupported or corrupt image: the original stays the only rendition.
+      return null;
+    }
+    if (image == null) {
+      return null;
+    }
+
+    ImageVariant[] sizes = ImageVariant.values();
+    BufferedImage source = image;
+    try {
+      for (int i = sizes.length - 1; i >= 0; i--) {
+        ImageVariant variant = sizes[i];
+        source = scale(source, variant.getMaxSize());
+        String path = base + "-" + variant.getSuffix() + ".jpg";
+        write(source, Paths.get(path.substring(1)));
+        variants.put(variant, path);
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return variants;
+  }
+
+  private static BufferedImage decode(Path original) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+      if (in == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+          return null;
+        }
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  // Halves with bilinear filtering until close to the target, which stays sharp without the cost
+  // of a bicubic pass over the full-size image. Alpha is flattened onto white for JPEG.
+  private static BufferedImage scale(BufferedImage src, int maxSize) {
+    int w = src.getWidth();
+    int h = src.getHeight();
+    double ratio = Math.min(1.0, (double) maxSize / Math.max(w, h));
+    int targetW = Math.max(1, (int) Math.round(w * ratio));
+    int targetH = Math.max(1, (int) Math.round(h * ratio));
+
+    BufferedImage current = src;
+    do {
+      if (w / 2 >= targetW && h / 2 >= targetH) {
+        w /= 2;
+        h /= 2;
+      } else {
+        w = targetW;
+        h = targetH;
+      }
+      BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = next.createGraphics();
+      try {
+        g.setRenderingHint(
+            RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(current, 0, 0, w, h, Color.WHITE, null);
+      } finally {
+        g.dispose();
+      }
+      current = next;
+    } while (w != targetW || h != targetH);
+    return current;
+  }
+
+  private void write(BufferedImage image, Path target) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(quality);
+    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+    // Written under a unique temporary name and moved into place, so a half-written variant is
+    // never served, and two uploads of the same blob rendering at once do not collide.
+    Path tmp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+    try {
+      try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+        writer.setOutput(out);
+        writer.write(null, new IIOImage(image, null, null), param);
+      } finally {
+        writer.dispose();
+      }
+      Files.move(
+          tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static String baseName(String imagePath) {
+    int slash = imagePath.lastIndexOf('/');
+    int dot = imagePath.lastIndexOf('.');
+    return dot > slash ? imagePath.substring(0, dot) : imagePath;
+  }
+}
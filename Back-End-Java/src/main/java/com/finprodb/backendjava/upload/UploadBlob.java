@@ -0,0 +1,55 @@
+package com.finprodb.backendjava.upload;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+// Written by BlobStore through plain SQL upserts; mapped so the schema is validated with the rest.
+@Entity
+@Table(name = "upload_blobs")
+public class UploadBlob {
+  @Id
+  @Column(length = 64)
+  private String sha256;
+
+  @Column(nullable = false, length = 9)
+  private String extension;
+
+  @Column(nullable = false)
+  private Long sizeBytes;
+
+  @Column(nullable = false)
+  private Integer refCount;
+
+  @Column(nullable = false)
+  private Instant createdAt;
+
+  @Column(nullable = false)
+  private Instant updatedAt;
+
+  public String getSha256() {
+    return sha256;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  public Long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  public Integer getRefCount() {
+    return refCount;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+}
@@ -0,0 +1,263 @@
+package com.finprodb.backendjava.upload;
+
+import com.finprodb.backendjava.common.StaticResourceConfig;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Fast path for plain GET/HEAD of /uploads/**. Bodies of 48 KB and up are handed to Tomcat's
+// sendfile support, which streams them kernel-side with FileChannel.transferTo from the poller and
+// frees the request thread straight away; smaller ones are written from a cached open channel.
+// Range requests, precompressed siblings and anything unusual fall through to the regular
+// resource handler in StaticResourceConfig.
+@Component
+public class UploadFileFilter extends OncePerRequestFilter {
+  private static final String PREFIX = "/" + BlobStore.ROOT + "/";
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+  // Same cut-off as Tomcat's DefaultServlet: below it a plain write beats setting up sendfile.
+  private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+  private final Path root;
+  private final boolean enabled;
+  private final OpenFiles openFiles;
+
+  @Autowired
+  public UploadFileFilter(
+      @Value("${app.images.zero-copy:true}") boolean enabled,
+      @Value("${app.images.open-files:256}") int openFiles) {
+    this(Paths.get(BlobStore.ROOT), enabled, openFiles);
+  }
+
+  // Serves /uploads/** from `root` instead of the working directory's uploads folder.
+  UploadFileFilter(Path root, boolean enabled, int openFiles) {
+    this.root = root.toAbsolutePath().normalize();
+    this.enabled = enabled;
+    this.openFiles = new OpenFiles(Math.max(openFiles, 1));
+  }
+
+  @PreDestroy
+  void closeFiles() {
+    openFiles.clear();
+  }
+
+  // Drops the cached channel of a file that is about to be deleted or moved away.
+  public void evict(Path file) {
+    openFiles.evict(file.toAbsolutePath().normalize());
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!enabled) {
+      return true;
+    }
+    String method = request.getMethod();
+    return !("GET".equals(method) || "HEAD".equals(method))
+        || !request.getRequestURI().startsWith(request.getContextPath() + PREFIX)
+        || request.getHeader(HttpHeaders.RANGE) != null;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    Path file = resolve(request);
+    OpenFile open = file != null ? openFiles.acquire(file) : null;
+    if (open == null || (open.gzipped && acceptsGzip(request))) {
+      if (open != null) {
+        openFiles.release(open);
+      }
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    try {
+      String filename = file.getFileName().toString();
+      response.setHeader(
+          HttpHeaders.CACHE_CONTROL, StaticResourceConfig.UPLOAD_CACHE.getHeaderValue());
+      if (new ServletWebRequest(request, response)
+          .checkNotModified(filename, open.lastModified)) {
+        return;
+      }
+      response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+      response.setContentType(
+          MediaTypeFactory.getMediaType(filename)
+              .orElse(MediaType.APPLICATION_OCTET_STREAM)
+              .toString());
+      response.setContentLengthLong(open.size);
+      if ("HEAD".equals(request.getMethod()) || open.size == 0) {
+        return;
+      }
+
+      if (open.size >= SENDFILE_MIN_SIZE
+          && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+        request.setAttribute(SENDFILE_FILENAME, file.toString());
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, open.size);
+        return;
+      }
+      OutputStream out = response.getOutputStream();
+      WritableByteChannel target = Channels.newChannel(out);
+      long position = 0;
+      while (position < open.size) {
+        position += open.channel.transferTo(position, open.size - position, target);
+      }
+    } finally {
+      openFiles.release(open);
+    }
+  }
+
+  private Path resolve(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    String relative = path.substring(PREFIX.length());
+    // Encoded or odd names are left to the resource handler, which decodes and vets them.
+    if (relative.isEmpty() || relative.contains("%") || relative.contains("\\")) {
+      return null;
+    }
+    Path file = root.resolve(relative).normalize();
+    return file.startsWith(root) ? file : null;
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return accept != null && accept.contains("gzip");
+  }
+
+  private static final class OpenFile {
+    private final FileChannel channel;
+    private final long size;
+    private final long lastModified;
+    private final boolean gzipped;
+    private int users;
+    private boolean evicted;
+
+    private OpenFile(FileChannel channel, long lastModified, boolean gzipped)
+        throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      this.lastModified = lastModified;
+      this.gzipped = gzipped;
+    }
+  }
+
+  // LRU of open read-only channels for hot files. transferTo with an explicit position never
+  // touches the channel's own position, so one channel serves concurrent requests; a channel
+  // pushed out of the LRU is closed once its last in-flight request releases it.
+  private static final class OpenFiles {
+    private final Map<Path, OpenFile> files;
+
+    private OpenFiles(int capacity) {
+      this.files =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, OpenFile> eldest) {
+              if (size() <= capacity) {
+                return false;
+              }
+              retire(eldest.getValue());
+              return true;
+            }
+          };
+    }
+
+    private OpenFile acquire(Path file) throws IOException {
+      synchronized (this) {
+        OpenFile open = files.get(file);
+        if (open != null) {
+          open.users++;
+          return open;
+        }
+      }
+
+      OpenFile opened;
+      try {
+        // Opening a directory for reading succeeds on Linux, and only transferTo fails on it.
+        BasicFileAttributes attributes =
+            Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isRegularFile()) {
+          return null;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+          opened =
+              new OpenFile(
+                  channel,
+                  attributes.lastModifiedTime().toMillis(),
+                  Files.exists(file.resolveSibling(file.getFileName() + ".gz")));
+        } catch (IOException e) {
+          channel.close();
+          throw e;
+        }
+      } catch (IOException e) {
+        // Missing, unreadable, directory and symlinked paths are the resource handler's business.
+        return null;
+      }
+
+      synchronized (this) {
+        OpenFile raced = files.get(file);
+        if (raced != null) {
+          opened.channel.close();
+          raced.users++;
+          return raced;
+        }
+        opened.users++;
+        files.put(file, opened);
+        return opened;
+      }
+    }
+
+    private synchronized void release(OpenFile open) throws IOException {
+      open.users--;
+      if (open.evicted && open.users == 0) {
+        open.channel.close();
+      }
+    }
+
+    private synchronized void evict(Path file) {
+      OpenFile open = files.remove(file);
+      if (open != null) {
+        retire(open);
+      }
+    }
+
+    private synchronized void clear() {
+      files.values().forEach(this::retire);
+      files.clear();
+    }
+
+    private void retire(OpenFile open) {
+      open.evicted = true;
+      if (open.users == 0) {
+        try {
+          open.channel.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package com.finprodb.backendjava.upload;
+
+public enum UploadSweepMode {
+  DRY_RUN,
+  QUARANTINE,
+  DELETE
+}
@@ -0,0 +1,478 @@
+package com.finprodb.backendjava.upload;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Removes files under uploads/ that no live product or category points at any more: replaced
+// images, images of soft-deleted rows and temp files left by a crash. Every directory entry read
+// and every removal goes through a rate limit, so a sweep over a large tree never crowds out image
+// serving. Files younger than the minimum age are never touched, which covers uploads still in
+// flight between BlobStore.store() and the row update.
+@Component
+public class UploadSweeper {
+  public static final String QUARANTINE_ROOT = "uploads-quarantine";
+  private static final int SAMPLE_SIZE = 100;
+  private static final String[] REFERENCE_QUERIES = {
+    "select image_path, image_thumb_path, image_card_path, image_full_path from products"
+        + " where deleted_at is null",
+    "select image_path, image_thumb_path, image_card_path, image_full_path from categories"
+        + " where is_deleted = false"
+  };
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final UploadFileFilter fileFilter;
+  private final UploadSweepMode scheduledMode;
+  private final Duration minAge;
+  private final int filesPerSecond;
+  private final int quarantineDays;
+
+  private volatile Map<String, Object> lastReport;
+
+  public UploadSweeper(
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      UploadFileFilter fileFilter,
+      @Value("${app.uploads.sweep-mode:QUARANTINE}") UploadSweepMode scheduledMode,
+      @Value("${app.uploads.sweep-min-age-hours:24}") long minAgeHours,
+      @Value("${app.uploads.sweep-files-per-second:200}") int filesPerSecond,
+      @Value("${app.uploads.quarantine-days:7}") int quarantineDays) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.fileFilter = fileFilter;
+    this.scheduledMode = scheduledMode;
+    this.minAge = Duration.ofHours(Math.max(minAgeHours, 1));
+    this.filesPerSecond = filesPerSecond;
+    this.quarantineDays = Math.max(quarantineDays, 0);
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.uploads.sweep-interval-ms:86400000}",
+      initialDelayString = "${app.uploads.sweep-interval-ms:86400000}")
+  public void scheduledSweep() {
+    sweep(scheduledMode);
+  }
+
+  public Map<String, Object> lastReport() {
+    return lastReport;
+  }
+
+  public synchronized Map<String, Object> sweep(UploadSweepMode mode) {
+    Instant startedAt = Instant.now();
+    Sweep sweep = new Sweep(mode, startedAt.minus(minAge), new Throttle(filesPerSecond));
+    sweep.referenced = loadReferences();
+    Path root = Paths.get(BlobStore.ROOT);
+    try {
+      if (Files.isDirectory(root)) {
+        sweep.directory(root, root);
+      }
+      if (mode != UploadSweepMode.DRY_RUN) {
+        sweep.purgeQuarantine(LocalDate.ofInstant(startedAt, ZoneOffset.UTC));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to sweep uploads", e);
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("mode", mode);
+    report.put("startedAt", startedAt);
+    report.put("finishedAt", Instant.now());
+    report.put("referencedPaths", sweep.referenced.size());
+    report.put("scannedFiles", sweep.scannedFiles);
+    report.put("scannedBytes", sweep.scannedBytes);
+    report.put("liveFiles", sweep.liveFiles);
+    report.put("recentFiles", sweep.recentFiles);
+    report.put("orphanFiles", sweep.orphanFiles);
+    report.put("orphanBytes", sweep.orphanBytes);
+    report.put("removedFiles", sweep.removedFiles);
+    report.put("staleBlobCounts", sweep.staleBlobCounts);
+    report.put("purgedQuarantineDays", sweep.purgedDays);
+    report.put("sample", sweep.sample);
+    lastReport = report;
+    return report;
+  }
+
+  // Every image column of live rows, as 64-bit fingerprints: a few bytes per path instead of a
+  // String each. A collision can only keep an orphan around, never remove a live file.
+  private PathSet loadReferences() {
+    PathSet referenced = new PathSet();
+    for (String sql : REFERENCE_QUERIES) {
+      jdbcTemplate.query(
+          con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(1000);
+            return ps;
+          },
+          rs -> {
+            for (int i = 1; i <= 4; i++) {
+              String path = rs.getString(i);
+              if (path != null) {
+                referenced.add(PathSet.fingerprint(path));
+              }
+            }
+          });
+    }
+    return referenced;
+  }
+
+  private final class Sweep {
+    private final UploadSweepMode mode;
+    private final Instant cutoff;
+    private final Throttle throttle;
+    private PathSet referenced;
+    private long scannedFiles;
+    private long scannedBytes;
+    private long liveFiles;
+    private long recentFiles;
+    private long orphanFiles;
+    private long orphanBytes;
+    private long removedFiles;
+    private long staleBlobCounts;
+    private long purgedDays;
+    private final List<String> sample = new ArrayList<>();
+
+    private Sweep(UploadSweepMode mode, Instant cutoff, Throttle throttle) {
+      this.mode = mode;
+      this.cutoff = cutoff;
+      this.throttle = throttle;
+    }
+
+    // Streams one directory at a time. Files of a blob (original, .gz and variants) share a leaf
+    // directory and are decided together, so a blob is never left half removed.
+    private void directory(Path root, Path dir) throws IOException {
+      boolean blobs = root.relativize(dir).startsWith(BlobStore.BLOBS);
+      Map<String, List<Entry>> blobFiles = new HashMap<>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (Path path : entries) {
+          throttle.acquire();
+          BasicFileAttributes attrs;
+          try {
+            attrs =
+                Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+          } catch (NoSuchFileException e) {
+            continue;
+          }
+          if (attrs.isDirectory()) {
+            directory(root, path);
+            continue;
+          }
+          if (!attrs.isRegularFile()) {
+            continue;
+          }
+          scannedFiles++;
+          scannedBytes += attrs.size();
+          Entry entry =
+              new Entry(path, publicPath(root, path), attrs.size(), attrs.lastModifiedTime());
+          String hash = blobs ? blobHash(path.getFileName().toString()) : null;
+          if (hash != null) {
+            blobFiles.computeIfAbsent(hash, h -> new ArrayList<>()).add(entry);
+          } else {
+            file(entry);
+          }
+        }
+      }
+      for (Map.Entry<String, List<Entry>> blob : blobFiles.entrySet()) {
+        blob(blob.getKey(), blob.getValue());
+      }
+    }
+
+    private void file(Entry entry) throws IOException {
+      if (isLive(entry)) {
+        liveFiles++;
+      } else if (entry.modified.isAfter(cutoff)) {
+        recentFiles++;
+      } else {
+        orphan(entry);
+        remove(entry);
+      }
+    }
+
+    private void blob(String hash, List<Entry> files) throws IOException {
+      for (Entry entry : files) {
+        if (isLive(entry)) {
+          liveFiles += files.size();
+          return;
+        }
+      }
+      for (Entry entry : files) {
+        if (entry.modified.isAfter(cutoff)) {
+          recentFiles += files.size();
+          return;
+        }
+      }
+      if (mode == UploadSweepMode.DRY_RUN) {
+        files.forEach(this::orphan);
+        return;
+      }
+      // The row lock orders this against BlobStore.store(): an upload of the same bytes either
+      // commits first and bumps updated_at (the blob is kept), or waits and then puts its file
+      // back after the removal.
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            List<Object[]> rows =
+                jdbcTemplate.query(
+                    "select ref_count, updated_at from upload_blobs where sha256 = ? for update",
+                    (rs, i) ->
+                        new Object[] {
+                          rs.getInt(1),
+                          rs.getTimestamp(2, Calendar.getInstance(TimeZone.getTimeZone("UTC")))
+                        },
+                    hash);
+            if (!rows.isEmpty()) {
+              if (((Timestamp) rows.get(0)[1]).toInstant().isAfter(cutoff)) {
+                recentFiles += files.size();
+                return;
+              }
+              // Counts drift when a row is soft-deleted or a release was lost; the walk is the
+              // source of truth.
+              if ((Integer) rows.get(0)[0] > 0) {
+                staleBlobCounts++;
+              }
+            }
+            try {
+              for (Entry entry : files) {
+                orphan(entry);
+                remove(entry);
+              }
+            } catch (IOException e) {
+              throw new IllegalStateException("Failed to remove blob " + hash, e);
+            }
+            jdbcTemplate.update("delete from upload_blobs where sha256 = ?", hash);
+          });
+    }
+
+    private boolean isLive(Entry entry) {
+      String path = entry.publicPath;
+      return referenced.contains(PathSet.fingerprint(path))
+          || (path.endsWith(".gz")
+              && referenced.contains(
+                  PathSet.fingerprint(path.substring(0, path.length() - ".gz".length()))));
+    }
+
+    private void orphan(Entry entry) {
+      orphanFiles++;
+      orphanBytes += entry.size;
+      if (sample.size() < SAMPLE_SIZE) {
+        sample.add(entry.publicPath);
+      }
+    }
+
+    private void remove(Entry entry) throws IOException {
+      if (mode == UploadSweepMode.DRY_RUN) {
+        return;
+      }
+      throttle.acquire();
+      fileFilter.evict(entry.path);
+      if (mode == UploadSweepMode.DELETE) {
+        Files.deleteIfExists(entry.path);
+      } else {
+        Path target =
+            Paths.get(QUARANTINE_ROOT, LocalDate.now(ZoneOffset.UTC).toString())
+                .resolve(entry.publicPath.substring(("/" + BlobStore.ROOT + "/").length()));
+        Files.createDirectories(target.getParent());
+        try {
+          Files.move(entry.path, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(entry.path, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+          return;
+        }
+      }
+      removedFiles++;
+    }
+
+    // Quarantine is kept per UTC day so a bad sweep can be undone by moving a day back.
+    private void purgeQuarantine(LocalDate today) throws IOException {
+      Path root = Paths.get(QUARANTINE_ROOT);
+      if (!Files.isDirectory(root)) {
+        return;
+      }
+      List<Path> expired = new ArrayList<>();
+      try (DirectoryStream<Path> days = Files.newDirectoryStream(root)) {
+        for (Path day : days) {
+          try {
+            if (LocalDate.parse(day.getFileName().toString())
+                .isBefore(today.minusDays(quarantineDays))) {
+              expired.add(day);
+            }
+          } catch (DateTimeParseException e) {
+            // Not ours; leave it.
+          }
+        }
+      }
+      for (Path day : expired) {
+        Files.walkFileTree(
+            day,
+            new SimpleFileVisitor<>() {
+              @Override
+              public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                  throws IOException {
+                throttle.acquire();
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+              }
+
+              @Override
+              public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                  throws IOException {
+                if (e != null) {
+                  throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+              }
+            });
+        purgedDays++;
+      }
+    }
+  }
+
+  private static String publicPath(Path root, Path file) {
+    return "/" + BlobStore.ROOT + "/" + root.relativize(file).toString().replace('\\', '/');
+  }
+
+  // "<sha-256>.<ext>", "<sha-256>.<ext>.gz" and "<sha-256>-<variant>.jpg" all belong to one blob.
+  private static String blobHash(String filename) {
+    if (filename.length() < 64) {
+      return null;
+    }
+    String hash = filename.substring(0, 64);
+    if (!hash.matches("[0-9a-f]{64}")) {
+      return null;
+    }
+    if (filename.length() == 64 || filename.charAt(64) == '.' || filename.charAt(64) == '-') {
+      return hash;
+    }
+    return null;
+  }
+
+  private static final class Entry {
+    private final Path path;
+    private final String publicPath;
+    private final long size;
+    private final Instant modified;
+
+    private Entry(
+        Path path, String publicPath, long size, FileTime modified) {
+      this.path = path;
+      this.publicPath = publicPath;
+      this.size = size;
+      this.modified = modified.toInstant();
+    }
+  }
+
+  // Spaces operations evenly at the configured rate; zero or less means unthrottled.
+  private static final class Throttle {
+    private final long intervalNanos;
+    private long next = System.nanoTime();
+
+    private Throttle(int perSecond) {
+      this.intervalNanos = perSecond > 0 ? 1_000_000_000L / perSecond : 0;
+    }
+
+    private void acquire() {
+      if (intervalNanos == 0) {
+        return;
+      }
+      long now = System.nanoTime();
+      while (next - now > 0) {
+        LockSupport.parkNanos(next - now);
+        now = System.nanoTime();
+      }
+      next = Math.max(next, now) + intervalNanos;
+    }
+  }
+
+  // Open-addressing set of non-zero longs, kept at most half full.
+  static final class PathSet {
+    private long[] slots = new long[1024];
+    private int size;
+
+    static long fingerprint(String path) {
+      long h = 0xcbf29ce484222325L;
+      for (int i = 0; i < path.length(); i++) {
+        h ^= path.charAt(i);
+        h *= 0x100000001b3L;
+      }
+      // FNV-1a leaves the low bits poorly mixed; finish with the murmur3 avalanche.
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h == 0 ? 1 : h;
+    }
+
+    void add(long fingerprint) {
+      if ((size + 1) * 2 > slots.length) {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        size = 0;
+        for (long value : old) {
+          if (value != 0) {
+            insert(value);
+          }
+        }
+      }
+      insert(fingerprint);
+    }
+
+    boolean contains(long fingerprint) {
+      int mask = slots.length - 1;
+      for (int i = (int) fingerprint & mask; slots[i] != 0; i = (i + 1) & mask) {
+        if (slots[i] == fingerprint) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private void insert(long fingerprint) {
+      int mask = slots.length - 1;
+      int i = (int) fingerprint & mask;
+      while (slots[i] != 0) {
+        if (slots[i] == fingerprint) {
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      slots[i] = fingerprint;
+      size++;
+    }
+  }
+}
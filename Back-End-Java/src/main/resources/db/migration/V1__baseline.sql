@@ -0,0 +1,120 @@
+-- Schema as previously created by ddl-auto=update. Databases that already have it are baselined
+-- at this version (spring.flyway.baseline-on-migrate) and skip this script.
+
+create table users (
+  id bigint not null auto_increment,
+  name varchar(255) not null,
+  username varchar(255) not null,
+  email varchar(255) not null,
+  password_hash varchar(255) not null,
+  role enum ('ADMIN','USER') not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table categories (
+  id bigint not null auto_increment,
+  name varchar(255) not null,
+  description TEXT,
+  image_path varchar(255),
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  is_deleted bit not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table products (
+  id bigint not null auto_increment,
+  name varchar(255) not null,
+  description TEXT,
+  price decimal(19,2) not null,
+  stock integer not null,
+  active bit not null,
+  image_path varchar(255),
+  category_id bigint,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  deleted_at datetime(6),
+  primary key (id)
+) engine=InnoDB;
+
+create table addresses (
+  id bigint not null auto_increment,
+  user_id bigint not null,
+  label varchar(255) not null,
+  recipient_name varchar(255),
+  address_line TEXT not null,
+  phone varchar(255) not null,
+  is_default bit not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table cart_items (
+  id bigint not null auto_increment,
+  user_id bigint not null,
+  product_id bigint not null,
+  quantity integer not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table orders (
+  id bigint not null auto_increment,
+  user_id bigint not null,
+  order_code varchar(255) not null,
+  status VARCHAR(32) not null,
+  approval_status VARCHAR(16),
+  approved_at datetime(6),
+  rejected_at datetime(6),
+  approved_by_user_id bigint,
+  total_amount decimal(19,2) not null,
+  shipping_address TEXT,
+  shipping_phone varchar(255),
+  courier_phone varchar(255),
+  courier_plate varchar(255),
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table order_items (
+  id bigint not null auto_increment,
+  order_id bigint not null,
+  product_id bigint not null,
+  quantity integer not null,
+  price decimal(19,2) not null,
+  subtotal decimal(19,2) not null,
+  primary key (id)
+) engine=InnoDB;
+
+create table payment_transactions (
+  id bigint not null auto_increment,
+  order_id bigint not null,
+  provider enum ('MIDTRANS') not null,
+  status enum ('CREATED','FAILED','PENDING','SUCCESS') not null,
+  gross_amount decimal(19,2) not null,
+  snap_token varchar(255),
+  redirect_url varchar(255),
+  last_notification_json TEXT,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB;
+
+-- Constraint names match the ones Hibernate generated, so baselined and fresh databases agree.
+alter table users add constraint uk_users_username unique (username);
+alter table users add constraint uk_users_email unique (email);
+alter table cart_items add constraint uk_cart_user_product unique (user_id, product_id);
+alter table orders add constraint UKdhk2umg8ijjkg4njg6891trit unique (order_code);
+
+alter table addresses add constraint FK1fa36y2oqhao3wgg2rw1pi459 foreign key (user_id) references users (id);
+alter table cart_items add constraint FK1re40cjegsfvw58xrkdp6bac6 foreign key (product_id) references products (id);
+alter table cart_items add constraint FK709eickf3kc0dujx3ub9i7btf foreign key (user_id) references users (id);
+alter table order_items add constraint FKbioxgbv59vetrxe0ejfubep1w foreign key (order_id) references orders (id);
+alter table order_items add constraint FKocimc7dtr037rh4ls4l95nlfi foreign key (product_id) references products (id);
+alter table orders add constraint FKjo7mgywlpe1q5a4rl0l0esdd foreign key (approved_by_user_id) references users (id);
+alter table orders add constraint FK32ql8ubntj5uh44ph9659tiih foreign key (user_id) references users (id);
+alter table payment_transactions add constraint FKnsous9qyrjv5ss8que6o6617 foreign key (order_id) references orders (id);
+alter table products add constraint FKog2rp4qthbtt2lfyhfo32lsw9 foreign key (category_id) references categories (id);
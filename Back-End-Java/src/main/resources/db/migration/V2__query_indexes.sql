@@ -0,0 +1,28 @@
+-- Composite indexes for the hot repository queries. Equality columns come first, then the
+-- range/sort columns, so each query reads its page straight off the index in order. InnoDB
+-- appends the primary key to every secondary index, which covers the "id" tie-breakers.
+
+-- Keyset scroll and listings of live products (ProductRepository.findActive*).
+create index idx_products_live_created on products (active, deleted_at, created_at);
+create index idx_products_live_category_created on products (active, deleted_at, category_id, created_at);
+create index idx_products_live_price on products (active, deleted_at, price);
+create index idx_products_live_category_price on products (active, deleted_at, category_id, price);
+-- Admin listing, export and index bootstrap walk non-deleted products by id.
+create index idx_products_deleted_at on products (deleted_at);
+
+-- Order history per user, admin lists by status, and the summary count/sum by status.
+create index idx_orders_user_created on orders (user_id, created_at);
+create index idx_orders_status_created on orders (status, created_at, total_amount);
+create index idx_orders_created on orders (created_at);
+
+-- Items of one order, and the sales/co-purchase rollups that only need product and quantity.
+create index idx_order_items_order_product on order_items (order_id, product_id, quantity);
+
+-- Latest transaction of an order.
+create index idx_payment_transactions_order_created on payment_transactions (order_id, created_at);
+
+-- Address book per user and the default-address lookup.
+create index idx_addresses_user_created on addresses (user_id, created_at);
+create index idx_addresses_user_default on addresses (user_id, is_default);
+
+-- cart_items(user_id, product_id) is already covered by uk_cart_user_product.
@@ -0,0 +1,11 @@
+-- Downscaled JPEG renditions written after upload; null until generated (or for images that
+-- cannot be decoded), in which case clients fall back to image_path.
+alter table products
+  add column image_thumb_path varchar(255),
+  add column image_card_path varchar(255),
+  add column image_full_path varchar(255);
+
+alter table categories
+  add column image_thumb_path varchar(255),
+  add column image_card_path varchar(255),
+  add column image_full_path varchar(255);
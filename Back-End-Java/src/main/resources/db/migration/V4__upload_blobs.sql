@@ -0,0 +1,15 @@
+-- One row per distinct upload stored under uploads/blobs/, keyed by the sha-256 of its bytes.
+-- ref_count is the number of product and category rows whose image_path names the blob; blobs
+-- at zero are left for the orphan sweep.
+create table upload_blobs (
+  sha256 varchar(64) not null,
+  extension varchar(9) not null,
+  size_bytes bigint not null,
+  ref_count integer not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (sha256)
+) engine=InnoDB;
+
+-- Lets the orphan sweep find unreferenced blobs without reading the whole table.
+create index idx_upload_blobs_ref_count on upload_blobs (ref_count, updated_at);
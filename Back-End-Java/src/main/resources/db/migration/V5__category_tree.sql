@@ -0,0 +1,16 @@
+-- Parent/child categories. path is the materialized path of ids from the root, e.g. "/3/17/42/",
+-- so every category under /3/ is one range on idx_categories_path. Existing categories become
+-- roots.
+alter table categories
+  add column parent_id bigint,
+  add column path varchar(255),
+  add column depth integer;
+
+update categories set path = concat('/', id, '/'), depth = 0;
+
+alter table categories
+  modify path varchar(255) not null,
+  modify depth integer not null;
+
+create index idx_categories_path on categories (path);
+create index idx_categories_parent on categories (parent_id);
@@ -0,0 +1,15 @@
+-- Live product count and price range of each category's own products, so category listings do
+-- not need a COUNT per category. Kept current by product writes and an hourly reconciler.
+alter table categories
+  add column product_count integer not null default 0,
+  add column min_price decimal(19,2),
+  add column max_price decimal(19,2);
+
+update categories c
+  left join (
+    select category_id, count(*) as n, min(price) as lo, max(price) as hi
+    from products
+    where active = true and deleted_at is null and category_id is not null
+    group by category_id
+  ) s on s.category_id = c.id
+set c.product_count = coalesce(s.n, 0), c.min_price = s.lo, c.max_price = s.hi;
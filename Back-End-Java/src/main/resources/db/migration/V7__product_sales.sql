@@ -0,0 +1,9 @@
+-- Units sold per product, behind the best-seller ranking. Not part of V1: databases baselined
+-- at version 1 predate it. Builds that still ran ddl-auto=update may have created it already,
+-- hence "if not exists". ProductSalesService rebuilds an empty table from paid orders.
+create table if not exists product_sales (
+  product_id bigint not null,
+  units_sold bigint not null,
+  updated_at datetime(6) not null,
+  primary key (product_id)
+) engine=InnoDB;
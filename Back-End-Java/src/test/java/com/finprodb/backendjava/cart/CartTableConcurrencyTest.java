@@ -0,0 +1,146 @@
+package com.finprodb.backendjava.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.finprodb.backendjava.product.Product;
+import com.finprodb.backendjava.product.ProductRepository;
+import com.finprodb.backendjava.user.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Concurrent adds of the same product must meet on uk_cart_user_product, as the migrations
+// create it: one row, and every quantity added to it.
+class CartTableConcurrencyTest {
+  private static final int THREADS = 8;
+  private static final int ADDS_PER_THREAD = 50;
+  private static final int QUANTITY = 3;
+
+  private JdbcTemplate jdbcTemplate;
+  private TransactionTemplate transactionTemplate;
+  private CartTable cartTable;
+  private ExecutorService executor;
+  private long userId;
+  private long productId;
+
+  @BeforeEach
+  void setUp() {
+    DataSource dataSource = CartTestDatabase.create();
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    // Each call runs in its own transaction, as CartTable's @Transactional gives it in the app.
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    cartTable = new CartTable(jdbcTemplate);
+    executor = Executors.newFixedThreadPool(THREADS + 1);
+    userId = CartTestDatabase.insertUser(jdbcTemplate, "buyer");
+    productId = CartTestDatabase.insertProduct(jdbcTemplate, "Shoes");
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+    jdbcTemplate.execute("shutdown");
+  }
+
+  @Test
+  void concurrentUpsertsOfOneProductAddUpOnOneRow() throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    Set<Long> lineIds = ConcurrentHashMap.newKeySet();
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                  CartLine line =
+                      transactionTemplate.execute(
+                          status -> cartTable.upsert(userId, productId, QUANTITY));
+                  lineIds.add(line.getId());
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> worker : workers) {
+      worker.get(60, TimeUnit.SECONDS);
+    }
+
+    List<CartLine> lines = cartTable.load(userId);
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0).getProductId()).isEqualTo(productId);
+    assertThat(lines.get(0).getQuantity()).isEqualTo(THREADS * ADDS_PER_THREAD * QUANTITY);
+    assertThat(lineIds).containsExactly(lines.get(0).getId());
+  }
+
+  // The default store only upserts a line it has not seen; later adds change the cached line and
+  // reach the table through the flush, which runs throughout here as the scheduler would run it.
+  @Test
+  void concurrentServiceAddsThroughWriteBehindStoreAllReachTheTable() throws Exception {
+    WriteBehindCartStore store = new WriteBehindCartStore(cartTable, new LocalCartCache(30));
+    Product product = new Product();
+    product.setId(productId);
+    product.setActive(true);
+    ProductRepository products = mock(ProductRepository.class);
+    when(products.findById(productId)).thenReturn(Optional.of(product));
+    CartService cartService = new CartService(store, products);
+    User user = new User();
+    user.setId(userId);
+
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean adding = new AtomicBoolean(true);
+    Future<?> flusher =
+        executor.submit(
+            () -> {
+              start.await();
+              while (adding.get()) {
+                store.flush();
+              }
+              return null;
+            });
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                  transactionTemplate.execute(
+                      status -> cartService.addItem(user, productId, QUANTITY));
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> worker : workers) {
+      worker.get(60, TimeUnit.SECONDS);
+    }
+    adding.set(false);
+    flusher.get(60, TimeUnit.SECONDS);
+    store.flush();
+
+    int total = THREADS * ADDS_PER_THREAD * QUANTITY;
+    assertThat(store.lines(userId)).singleElement().extracting(CartLine::getQuantity)
+        .isEqualTo(total);
+    List<CartLine> lines = cartTable.load(userId);
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0).getProductId()).isEqualTo(productId);
+    assertThat(lines.get(0).getQuantity()).isEqualTo(total);
+  }
+}
@@ -0,0 +1,67 @@
+package com.finprodb.backendjava.cart;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+// In-memory H2 in MySQL mode (for "on duplicate key update"), with the schema the Flyway
+// migrations ship. Only V1 and V2 run: V3 onwards use MariaDB-only ALTER syntax that H2 rejects,
+// and none of them touch cart_items, users or the product columns a cart needs.
+final class CartTestDatabase {
+  private CartTestDatabase() {}
+
+  static DataSource create() {
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(
+            "jdbc:h2:mem:cart-"
+                + UUID.randomUUID()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+            "sa",
+            "");
+    Flyway.configure()
+        .dataSource(dataSource)
+        .locations("classpath:db/migration")
+        .target("2")
+        .load()
+        .migrate();
+    return dataSource;
+  }
+
+  static long insertUser(JdbcTemplate jdbcTemplate, String username) {
+    return insert(
+        jdbcTemplate,
+        "insert into users (name, username, email, password_hash, role)"
+            + " values (?, ?, ?, 'x', 'USER')",
+        username,
+        username,
+        username + "@mail.com");
+  }
+
+  static long insertProduct(JdbcTemplate jdbcTemplate, String name) {
+    return insert(
+        jdbcTemplate,
+        "insert into products (name, price, stock, active, created_at, updated_at)"
+            + " values (?, 10000, 100, true, current_timestamp, current_timestamp)",
+        name);
+  }
+
+  private static long insert(JdbcTemplate jdbcTemplate, String sql, Object... args) {
+    KeyHolder keys = new GeneratedKeyHolder();
+    jdbcTemplate.update(
+        con -> {
+          PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+          for (int i = 0; i < args.length; i++) {
+            ps.setObject(i + 1, args[i]);
+          }
+          return ps;
+        },
+        keys);
+    return keys.getKey().longValue();
+  }
+}
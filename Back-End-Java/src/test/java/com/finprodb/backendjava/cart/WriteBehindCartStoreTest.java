@@ -0,0 +1,182 @@
+package com.finprodb.backendjava.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// The write-behind store's flush, failed-flush and rollback paths against the migrated schema.
+// Writes that join a caller's transaction run in a TransactionTemplate, as a request's would.
+class WriteBehindCartStoreTest {
+  private JdbcTemplate jdbcTemplate;
+  private TransactionTemplate transactionTemplate;
+  private GatedCartTable cartTable;
+  private WriteBehindCartStore store;
+  private ExecutorService executor;
+  private long userId;
+  private long shoes;
+  private long socks;
+
+  @BeforeEach
+  void setUp() {
+    DataSource dataSource = CartTestDatabase.create();
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    cartTable = new GatedCartTable(jdbcTemplate);
+    store = new WriteBehindCartStore(cartTable, new LocalCartCache(30));
+    executor = Executors.newSingleThreadExecutor();
+    userId = CartTestDatabase.insertUser(jdbcTemplate, "buyer");
+    shoes = CartTestDatabase.insertProduct(jdbcTemplate, "Shoes");
+    socks = CartTestDatabase.insertProduct(jdbcTemplate, "Socks");
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+    jdbcTemplate.execute("shutdown");
+  }
+
+  @Test
+  void rolledBackAddKeepsEditsNotYetFlushed() {
+    CartLine line = add(shoes, 6);
+    store.flush();
+    store.setQuantity(userId, line.getId(), 9);
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          store.add(userId, socks, 1);
+          status.setRollbackOnly();
+        });
+
+    assertThat(quantities(store.lines(userId))).containsExactly(Map.entry(shoes, 9));
+    store.flush();
+    assertThat(quantities(cartTable.load(userId))).containsExactly(Map.entry(shoes, 9));
+  }
+
+  @Test
+  void rolledBackClearKeepsEditsNotYetFlushed() {
+    CartLine line = add(shoes, 6);
+    store.flush();
+    store.setQuantity(userId, line.getId(), 9);
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          store.clear(userId);
+          status.setRollbackOnly();
+        });
+
+    assertThat(quantities(store.lines(userId))).containsExactly(Map.entry(shoes, 9));
+    store.flush();
+    assertThat(quantities(cartTable.load(userId))).containsExactly(Map.entry(shoes, 9));
+  }
+
+  @Test
+  void failedFlushPutsBackChangesAndKeepsEditsMadeDuringIt() throws Exception {
+    CartLine kept = add(shoes, 2);
+    CartLine removed = add(socks, 3);
+    store.flush();
+    store.setQuantity(userId, kept.getId(), 5);
+    store.remove(userId, removed.getId());
+
+    cartTable.fail = true;
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> flush = flushHeldAtWrite(release);
+    store.setQuantity(userId, kept.getId(), 7);
+    release.countDown();
+    assertThatThrownBy(() -> flush.get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(DataAccessResourceFailureException.class);
+
+    assertThat(quantities(store.lines(userId))).containsExactly(Map.entry(shoes, 7));
+    assertThat(quantities(cartTable.load(userId)))
+        .containsOnly(Map.entry(shoes, 2), Map.entry(socks, 3));
+
+    cartTable.fail = false;
+    store.flush();
+    assertThat(quantities(cartTable.load(userId))).containsExactly(Map.entry(shoes, 7));
+  }
+
+  @Test
+  void reAddWhileItsDeleteIsFlushingTakesTheNewQuantity() throws Exception {
+    CartLine line = add(socks, 5);
+    store.flush();
+    store.remove(userId, line.getId());
+
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> flush = flushHeldAtWrite(release);
+    add(socks, 2);
+    release.countDown();
+    flush.get(10, TimeUnit.SECONDS);
+    store.flush();
+
+    assertThat(quantities(store.lines(userId))).containsExactly(Map.entry(socks, 2));
+    assertThat(quantities(cartTable.load(userId))).containsExactly(Map.entry(socks, 2));
+  }
+
+  private CartLine add(long productId, int quantity) {
+    return transactionTemplate.execute(status -> store.add(userId, productId, quantity));
+  }
+
+  // Starts a flush and returns once it has taken its snapshot; it writes after `release`.
+  private Future<?> flushHeldAtWrite(CountDownLatch release) throws InterruptedException {
+    cartTable.entered = new CountDownLatch(1);
+    cartTable.release = release;
+    Future<?> flush = executor.submit(store::flush);
+    assertThat(cartTable.entered.await(10, TimeUnit.SECONDS)).isTrue();
+    return flush;
+  }
+
+  private static Map<Long, Integer> quantities(List<CartLine> lines) {
+    Map<Long, Integer> result = new HashMap<>();
+    for (CartLine line : lines) {
+      result.put(line.getProductId(), line.getQuantity());
+    }
+    return result;
+  }
+
+  // Lets a test hold a flush between its snapshot and the write, and make the write fail.
+  private static final class GatedCartTable extends CartTable {
+    private volatile CountDownLatch entered;
+    private volatile CountDownLatch release;
+    private volatile boolean fail;
+
+    private GatedCartTable(JdbcTemplate jdbcTemplate) {
+      super(jdbcTemplate);
+    }
+
+    @Override
+    public void write(Map<Long, CartState> carts, Instant removedBefore) {
+      CountDownLatch held = release;
+      if (held != null) {
+        release = null;
+        entered.countDown();
+        try {
+          held.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (fail) {
+        throw new DataAccessResourceFailureException("cart_items is unavailable");
+      }
+      super.write(carts, removedBefore);
+    }
+  }
+}
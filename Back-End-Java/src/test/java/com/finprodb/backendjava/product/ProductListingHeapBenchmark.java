@@ -0,0 +1,119 @@
+package com.finprodb.backendjava.product;
+
+import com.finprodb.backendjava.product.dto.ProductResponse;
+import jakarta.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.h2.tools.Server;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+// Heap cost of one listing page read through the ProductResponse projection versus through
+// Product entities mapped afterwards, the way listings were read before. Every page of a run goes
+// through one persistence context, as the pages of an open-in-view request do. Not part of the
+// regular test run (surefire only picks up *Test classes); run it with
+//   mvn test -Dtest=ProductListingHeapBenchmark -Dbenchmark.products=20000
+@DataJpaTest(
+    properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductListingHeapBenchmark {
+  private static final int PRODUCTS = Integer.getInteger("benchmark.products", 20_000);
+  private static final int PAGE_SIZE = 100;
+  private static final int DESCRIPTION_LENGTH = 2_000;
+
+  private static Server server;
+
+  // H2 runs as a TCP server in this JVM, so rows reach the test thread freshly decoded, as they
+  // do from MySQL, and the server's own work stays off the thread whose allocations are counted.
+  @DynamicPropertySource
+  static void database(DynamicPropertyRegistry registry) throws SQLException {
+    server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+    registry.add(
+        "spring.datasource.url",
+        () -> "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:listing-benchmark");
+    registry.add("spring.datasource.username", () -> "sa");
+    registry.add("spring.datasource.password", () -> "");
+  }
+
+  @AfterAll
+  static void stopDatabase() {
+    server.stop();
+  }
+
+  @Autowired private ProductRepository productRepository;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private EntityManager entityManager;
+
+  @Test
+  void heapPerPage() {
+    seed();
+    int pages = PRODUCTS / PAGE_SIZE;
+    Function<Pageable, List<ProductResponse>> projection =
+        page -> productRepository.findActiveListing(page).getContent();
+    Function<Pageable, List<ProductResponse>> entities =
+        page -> productRepository.findByDeletedAtIsNull(page).map(ProductResponse::from).getContent();
+
+    // Warm-up, so class loading and query plan caching stay out of the numbers.
+    measure(Math.max(pages / 10, 1), projection);
+    measure(Math.max(pages / 10, 1), entities);
+
+    System.out.printf("%d products, %d pages of %d%n", PRODUCTS, pages, PAGE_SIZE);
+    System.out.println("projection " + measure(pages, projection));
+    System.out.println("entities   " + measure(pages, entities));
+  }
+
+  private void seed() {
+    Timestamp now = Timestamp.from(Instant.now());
+    List<Object[]> rows = new ArrayList<>(PRODUCTS);
+    for (int i = 1; i <= PRODUCTS; i++) {
+      String description = (i + " ").repeat(DESCRIPTION_LENGTH).substring(0, DESCRIPTION_LENGTH);
+      rows.add(new Object[] {"product " + i, description, 1000 + i, 10, true, now, now});
+    }
+    jdbcTemplate.batchUpdate(
+        "insert into products (name, description, price, stock, active, created_at, updated_at)"
+            + " values (?, ?, ?, ?, ?, ?, ?)",
+        rows);
+  }
+
+  private String measure(int pages, Function<Pageable, List<ProductResponse>> load) {
+    entityManager.clear();
+    long usedBefore = usedHeapAfterGc();
+    long allocatedBefore = allocatedBytes();
+    int rows = 0;
+    for (int page = 0; page < pages; page++) {
+      rows += load.apply(PageRequest.of(page, PAGE_SIZE)).size();
+    }
+    long allocated = allocatedBytes() - allocatedBefore;
+    long retained = usedHeapAfterGc() - usedBefore;
+    int managed = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+    entityManager.clear();
+    return String.format(
+        "rows=%d allocated/page=%d KB retained/page=%d KB managed entities=%d",
+        rows, allocated / pages >> 10, retained / pages >> 10, managed);
+  }
+
+  private static long usedHeapAfterGc() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+}
@@ -0,0 +1,187 @@
+package com.finprodb.backendjava.product.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.finprodb.backendjava.category.Category;
+import com.finprodb.backendjava.product.Product;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+// Fuzzy search latency and recall over a synthetic catalog of four-word names. Recall compares
+// each result list with an exhaustive scoring of the whole catalog. Not part of the regular test
+// run (surefire only picks up *Test classes); run it with
+//   mvn test -Dtest=ProductTrigramIndexBenchmark -Dbenchmark.products=1000000 -DargLine=-Xmx3g
+class ProductTrigramIndexBenchmark {
+  private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000_000);
+  private static final double MIN_RECALL = 0.95;
+  private static final int CATEGORIES = 50;
+  // One more category holding only a handful of products, spread over the whole id range and
+  // named so that the queries below find them.
+  private static final long TINY_CATEGORY = CATEGORIES + 1L;
+  private static final int TINY_CATEGORY_EVERY = 200_000;
+  private static final int RUNS = 200;
+  private static final String[] KINDS = {
+    "sepatu", "tas", "kaos", "jaket", "celana", "topi", "sandal", "kemeja", "rok", "dompet", "jam",
+    "kacamata", "sarung", "hoodie", "sweater"
+  };
+  private static final String[] STYLES = {
+    "lari", "kulit", "polos", "hujan", "jeans", "gunung", "pria", "wanita", "anak", "sekolah",
+    "kerja", "santai", "olahraga", "batik", "denim"
+  };
+  private static final String[] COLORS = {
+    "merah", "biru", "hijau", "kuning", "hitam", "putih", "abu", "coklat", "navy", "pink", "ungu",
+    "oranye", "krem", "maroon", "tosca"
+  };
+  private static final String[] QUERIES = {
+    "sepatuu", "spatu lari", "jakeet hujn", "kacamta", "xyzq", "celana jeans hitm",
+    "sepatu lari merah"
+  };
+
+  @Test
+  void searchLatency() {
+    Random random = new Random(42);
+    Category[] categories = new Category[CATEGORIES + 1];
+    for (int i = 0; i <= CATEGORIES; i++) {
+      categories[i] = new Category();
+      categories[i].setId(i + 1L);
+    }
+    ProductTrigramIndex index = new ProductTrigramIndex();
+    String[] names = new String[PRODUCTS + 1];
+    long[] categoryOf = new long[PRODUCTS + 1];
+    long started = System.nanoTime();
+    for (long id = 1; id <= PRODUCTS; id++) {
+      Product product = new Product();
+      product.setId(id);
+      product.setActive(true);
+      String name =
+          KINDS[random.nextInt(KINDS.length)]
+              + " "
+              + STYLES[random.nextInt(STYLES.length)]
+              + " "
+              + COLORS[random.nextInt(COLORS.length)]
+              + " "
+              + Long.toString(random.nextLong() & 0xffffff, 36);
+      if (id % TINY_CATEGORY_EVERY == 0) {
+        product.setCategory(categories[CATEGORIES]);
+        name = "sepatu lari merah " + id;
+      } else {
+        product.setCategory(categories[random.nextInt(CATEGORIES)]);
+      }
+      product.setName(name);
+      index.upsert(product);
+      names[(int) id] = name;
+      categoryOf[(int) id] = product.getCategory().getId();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    System.out.printf(
+        "built %d products in %d ms, heap %d MB%n",
+        PRODUCTS,
+        (System.nanoTime() - started) / 1_000_000,
+        (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+    Set<Long> oneCategory = Set.of(1L);
+    Set<Long> tinyCategory = Set.of(TINY_CATEGORY);
+    for (String query : QUERIES) {
+      for (int i = 0; i < 50; i++) {
+        index.search(query, null);
+        index.search(query, oneCategory);
+        index.search(query, tinyCategory);
+      }
+    }
+    List<String> lowRecall = new ArrayList<>();
+    for (String query : QUERIES) {
+      report(index, names, categoryOf, query, "all", null, lowRecall);
+    }
+    for (String query : QUERIES) {
+      report(index, names, categoryOf, query, "category", oneCategory, lowRecall);
+    }
+    for (String query : QUERIES) {
+      report(index, names, categoryOf, query, "tiny", tinyCategory, lowRecall);
+    }
+    assertThat(lowRecall).as("queries with recall below %.2f", MIN_RECALL).isEmpty();
+  }
+
+  private static void report(
+      ProductTrigramIndex index,
+      String[] names,
+      long[] categoryOf,
+      String query,
+      String scope,
+      Set<Long> categoryIds,
+      List<String> lowRecall) {
+    long[] latencies = new long[RUNS];
+    long[] ids = new long[0];
+    for (int i = 0; i < RUNS; i++) {
+      long started = System.nanoTime();
+      ids = index.search(query, categoryIds);
+      latencies[i] = System.nanoTime() - started;
+    }
+    Arrays.sort(latencies);
+    double recall = recall(ids, names, categoryOf, query, categoryIds);
+    if (recall < MIN_RECALL) {
+      lowRecall.add(query + " (" + scope + ")");
+    }
+    System.out.printf(
+        "%-20s %-10s hits=%4d recall=%.3f p50=%.2fms p99=%.2fms%n",
+        query,
+        scope,
+        ids.length,
+        recall,
+        latencies[RUNS / 2] / 1e6,
+        latencies[RUNS * 99 / 100] / 1e6);
+  }
+
+  // Share of the exhaustive top MAX_RESULTS that the index returned. Ranks are compared by score
+  // rather than by id, so any of several equally good products counts as a hit.
+  private static double recall(
+      long[] ids, String[] names, long[] categoryOf, String query, Set<Long> categoryIds) {
+    List<String> queryTokens = SearchTokenizer.tokenize(query);
+    long[] queryGrams = ProductTrigramIndex.trigrams(queryTokens);
+    int minShared =
+        Math.max(1, (int) Math.ceil(ProductTrigramIndex.MIN_SIMILARITY * queryGrams.length));
+    List<long[]> all = new ArrayList<>();
+    for (int id = 1; id < names.length; id++) {
+      if (categoryIds == null || categoryIds.contains(categoryOf[id])) {
+        long[] score = score(queryTokens, queryGrams, minShared, names[id]);
+        if (score != null) {
+          all.add(score);
+        }
+      }
+    }
+    int k = Math.min(all.size(), ProductTrigramIndex.MAX_RESULTS);
+    if (k == 0) {
+      return ids.length == 0 ? 1.0 : 0.0;
+    }
+    all.sort(ProductTrigramIndexBenchmark::compare);
+    long[] kth = all.get(k - 1);
+    int found = 0;
+    for (long id : ids) {
+      long[] score = score(queryTokens, queryGrams, minShared, names[(int) id]);
+      if (score != null && compare(score, kth) <= 0) {
+        found++;
+      }
+    }
+    return (double) Math.min(found, k) / k;
+  }
+
+  // {shared trigrams, edit distance} as the index ranks them, or null below the similarity floor.
+  private static long[] score(
+      List<String> queryTokens, long[] queryGrams, int minShared, String name) {
+    List<String> tokens = SearchTokenizer.tokenize(name);
+    int shared = ProductTrigramIndex.shared(queryGrams, ProductTrigramIndex.trigrams(tokens));
+    if (shared < minShared) {
+      return null;
+    }
+    return new long[] {
+      shared, ProductTrigramIndex.distance(queryTokens, tokens.toArray(new String[0]))
+    };
+  }
+
+  private static int compare(long[] a, long[] b) {
+    return a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(a[1], b[1]);
+  }
+}
@@ -0,0 +1,65 @@
+package com.finprodb.backendjava.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+// Serves from a temporary directory standing in for the uploads root.
+class UploadFileFilterTest {
+  @TempDir Path dir;
+  private UploadFileFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    filter = new UploadFileFilter(dir, true, 16);
+  }
+
+  @AfterEach
+  void tearDown() {
+    filter.closeFiles();
+  }
+
+  @Test
+  void servesRegularFile() throws Exception {
+    Files.writeString(dir.resolve("a.txt"), "hello", StandardCharsets.UTF_8);
+    MockFilterChain chain = new MockFilterChain();
+    MockHttpServletResponse response = get("a.txt", chain);
+
+    assertThat(chain.getRequest()).isNull();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentLengthLong()).isEqualTo(5);
+    assertThat(response.getContentAsString()).isEqualTo("hello");
+  }
+
+  @Test
+  void leavesDirectoryToResourceHandler() throws Exception {
+    Files.createDirectory(dir.resolve("sub"));
+    for (int i = 0; i < 2; i++) {
+      MockFilterChain chain = new MockFilterChain();
+      MockHttpServletResponse response = get("sub", chain);
+
+      assertThat(chain.getRequest()).isNotNull();
+      assertThat(response.getHeader(HttpHeaders.CONTENT_LENGTH)).isNull();
+      assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isNull();
+    }
+  }
+
+  private MockHttpServletResponse get(String name, MockFilterChain chain) throws Exception {
+    MockHttpServletRequest request =
+        new MockHttpServletRequest(
+            "GET", "/" + BlobStore.ROOT + "/" + name);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, chain);
+    return response;
+  }
+}
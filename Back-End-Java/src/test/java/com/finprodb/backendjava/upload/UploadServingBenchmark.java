@@ -0,0 +1,205 @@
+package com.finprodb.backendjava.upload;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+// Throughput of /uploads/** through UploadFileFilter versus the resource handler alone
+// (app.images.zero-copy=false), over keep-alive connections. The clients run in this JVM, so
+// server CPU is the process CPU minus what the client threads used themselves. Not part of the
+// regular test run (surefire only picks up *Test classes); run it with
+//   mvn test -Dtest=UploadServingBenchmark -Dbenchmark.threads=8 -Dbenchmark.seconds=15
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:upload-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+      "spring.datasource.username=sa",
+      "spring.datasource.password=",
+      "spring.jpa.hibernate.ddl-auto=create-drop",
+      "spring.flyway.enabled=false",
+      "app.jwt.secret=upload-benchmark-secret-upload-benchmark-secret"
+    })
+class UploadServingBenchmark {
+  private static final int THREADS = Integer.getInteger("benchmark.threads", 8);
+  private static final int SECONDS = Integer.getInteger("benchmark.seconds", 15);
+  private static final int WARM_UP_SECONDS = 5;
+  private static final int[] SIZES_KB = {20, 100, 1024};
+
+  private static Path dir;
+
+  @BeforeAll
+  static void createFiles() throws IOException {
+    Path root = Paths.get(BlobStore.ROOT);
+    Files.createDirectories(root);
+    dir = Files.createTempDirectory(root, "benchmark-");
+    Random random = new Random(42);
+    for (int kb : SIZES_KB) {
+      byte[] bytes = new byte[kb << 10];
+      random.nextBytes(bytes);
+      Files.write(dir.resolve(kb + "k.jpg"), bytes);
+    }
+  }
+
+  @AfterAll
+  static void deleteFiles() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Nested
+  class ZeroCopyFilter {
+    @LocalServerPort private int port;
+
+    @Test
+    void throughput() throws Exception {
+      run("filter", port);
+    }
+  }
+
+  @Nested
+  @TestPropertySource(properties = "app.images.zero-copy=false")
+  class ResourceHandler {
+    @LocalServerPort private int port;
+
+    @Test
+    void throughput() throws Exception {
+      run("handler", port);
+    }
+  }
+
+  private static void run(String label, int port) throws Exception {
+    for (int kb : SIZES_KB) {
+      String path = "/" + BlobStore.ROOT + "/" + dir.getFileName() + "/" + kb + "k.jpg";
+      load(port, path, WARM_UP_SECONDS);
+      System.out.printf("%-8s %5d KB %s%n", label, kb, load(port, path, SECONDS));
+    }
+  }
+
+  private static String load(int port, String path, int seconds) throws Exception {
+    byte[] request =
+        ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    LongAdder requests = new LongAdder();
+    LongAdder bytes = new LongAdder();
+    LongAdder clientCpu = new LongAdder();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  // Tomcat closes a keep-alive connection after 100 requests; open a new one then.
+                  while (System.nanoTime() < deadline) {
+                    try (Socket socket = new Socket("localhost", port)) {
+                      OutputStream out = socket.getOutputStream();
+                      InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+                      boolean open = true;
+                      while (open && System.nanoTime() < deadline) {
+                        out.write(request);
+                        open = readResponse(in, bytes);
+                        requests.increment();
+                      }
+                    }
+                  }
+                } catch (IOException | RuntimeException e) {
+                  failure.compareAndSet(null, e);
+                } finally {
+                  clientCpu.add(ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime());
+                }
+              }));
+    }
+    long cpuBefore = processCpuTime();
+    long started = System.nanoTime();
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new IllegalStateException("load failed", failure.get());
+    }
+    double elapsed = (System.nanoTime() - started) / 1e9;
+    long serverCpu = processCpuTime() - cpuBefore - clientCpu.sum();
+    long count = Math.max(requests.sum(), 1);
+    return String.format(
+        "req/s=%8.0f MB/s=%7.1f server cpu/req=%6.1fus",
+        count / elapsed, bytes.sum() / elapsed / (1 << 20), serverCpu / 1e3 / count);
+  }
+
+  // Reads one response, adding its body length to bytes, and tells whether the server keeps the
+  // connection open.
+  private static boolean readResponse(InputStream in, LongAdder bytes) throws IOException {
+    long contentLength = -1;
+    boolean keepAlive = true;
+    boolean statusLine = true;
+    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+      if (statusLine) {
+        if (!line.startsWith("HTTP/1.1 200")) {
+          throw new IllegalStateException("unexpected response: " + line);
+        }
+        statusLine = false;
+      } else if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+        contentLength = Long.parseLong(line.substring(15).trim());
+      } else if (line.equalsIgnoreCase("Connection: close")) {
+        keepAlive = false;
+      }
+    }
+    if (contentLength < 0) {
+      throw new IllegalStateException("response without Content-Length");
+    }
+    for (long left = contentLength; left > 0; ) {
+      long skipped = in.skip(left);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new IOException("connection closed mid-body");
+        }
+        skipped = 1;
+      }
+      left -= skipped;
+    }
+    bytes.add(contentLength);
+    return keepAlive;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    for (int c = in.read(); c != '\n'; c = in.read()) {
+      if (c < 0) {
+        throw new IOException("connection closed");
+      }
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+
+  private static long processCpuTime() {
+    return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+        .getProcessCpuTime();
+  }
+}